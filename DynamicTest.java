@@ -0,0 +1,160 @@
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.edge.*;
+
+import feedback.*;
+
+/**
+ * checks DynamicFeedbackEdgeSet and DynamicFeedbackVertexSet on random sequences of changes:
+ * after each step the structure must be consistent, its weight must be that of its feedback
+ * set, and the graph without the feedback set must be acyclic
+ */
+public class DynamicTest {
+
+    private static Random rand = new Random(23);
+    private static int failures = 0;
+    private static int nextID = 0;
+
+    public static void main(String[] args) {
+	for (int i = 0; i < 20; i++) {
+	    test(new DynamicFeedbackEdgeSet(new FeedbackSets(5)), false, i % 2 == 0 ? 0 : 15);
+	    test(new DynamicFeedbackVertexSet(5), true, i % 2 == 0 ? 0 : 15);
+	    System.out.print(".");
+	}
+	System.out.println("\nfailures: " + failures);
+	if (failures > 0)
+	    throw new RuntimeException(failures + " checks of dynamic feedback sets failed");
+    }
+
+    /**
+     * @param vertexSet if the feedback set consists of vertices
+     * @param interval reoptimization interval, 0 for none in the background
+     */
+    private static void test(DynamicFeedbackSet set, boolean vertexSet, int interval) {
+	set.setReoptimizeInterval(interval);
+	List vertices = new ArrayList();
+	List edges = new ArrayList();
+	for (int i = 0; i < 20; i++)
+	    addVertex(set, vertexSet, vertices);
+	for (int step = 0; step < 300; step++) {
+	    int op = rand.nextInt(20);
+	    if (op == 0 && vertices.size() > 2) {
+		Object vertex = vertices.remove(rand.nextInt(vertices.size()));
+		set.removeVertex(vertex);
+		Iterator it = edges.iterator();
+		while (it.hasNext()) {
+		    Edge edge = (Edge)it.next();
+		    if (edge.getSource() == vertex || edge.getTarget() == vertex)
+			it.remove();
+		}
+	    }
+	    else if (op == 1)
+		addVertex(set, vertexSet, vertices);
+	    else if (op < 7 && !edges.isEmpty())
+		set.removeEdge((Edge)edges.remove(rand.nextInt(edges.size())));
+	    else if (op == 7)
+		set.reoptimize();
+	    else if (op == 8)
+		set.waitForReoptimizer();
+	    else {
+		Edge edge = new DirectedWeightedEdge(vertices.get(rand.nextInt(vertices.size())),
+						     vertices.get(rand.nextInt(vertices.size())),
+						     1.0 - rand.nextDouble());
+		try {
+		    set.addEdge(edge);
+		    edges.add(edge);
+		} catch (IllegalArgumentException e) {
+		    // closes a cycle of vertices that must not be removed
+		    if (set.containsEdge(edge))
+			fail(set, "rejected edge " + edge + " is kept");
+		}
+	    }
+	    check(set, vertexSet, vertices, edges);
+	}
+	set.waitForReoptimizer();
+	check(set, vertexSet, vertices, edges);
+    }
+
+    /**
+     * adds a vertex; in vertex sets every fifth must not be removed
+     */
+    private static void addVertex(DynamicFeedbackSet set, boolean vertexSet, List vertices) {
+	Object vertex;
+	if (vertexSet)
+	    vertex = new FeedbackVertex(rand.nextInt(5) == 0 ? FeedbackVertex.infinity : 1.0 - rand.nextDouble(),
+					nextID++);
+	else
+	    vertex = new Object();
+	vertices.add(vertex);
+	set.addVertex(vertex);
+    }
+
+    private static void check(DynamicFeedbackSet set, boolean vertexSet, List vertices, List edges) {
+	if (!set.isConsistent())
+	    fail(set, "inconsistent");
+	Set feedbackSet = set.getFeedbackSet();
+	double weight = 0;
+	Iterator it = feedbackSet.iterator();
+	while (it.hasNext()) {
+	    Object element = it.next();
+	    weight += vertexSet ? ((FeedbackVertex)element).getWeight() : ((Edge)element).getWeight();
+	}
+	if (Math.abs(weight - set.getWeight()) > 1e-6)
+	    fail(set, "weight " + set.getWeight() + ", feedback set weighs " + weight);
+	if (!isAcyclic(vertices, edges, feedbackSet))
+	    fail(set, "residual graph has a cycle");
+    }
+
+    /**
+     * @param removed vertices or edges not in the residual graph
+     * @return true if the residual graph is acyclic
+     */
+    private static boolean isAcyclic(List vertices, List edges, Set removed) {
+	HashMap successors = new HashMap();
+	HashMap inDegree = new HashMap();
+	Iterator it = vertices.iterator();
+	while (it.hasNext()) {
+	    Object vertex = it.next();
+	    if (!removed.contains(vertex)) {
+		successors.put(vertex, new ArrayList());
+		inDegree.put(vertex, new int[1]);
+	    }
+	}
+	it = edges.iterator();
+	while (it.hasNext()) {
+	    Edge edge = (Edge)it.next();
+	    if (removed.contains(edge) || !successors.containsKey(edge.getSource())
+		|| !successors.containsKey(edge.getTarget()))
+		continue;
+	    ((List)successors.get(edge.getSource())).add(edge.getTarget());
+	    ((int[])inDegree.get(edge.getTarget()))[0]++;
+	}
+	// repeatedly remove a vertex without predecessors
+	LinkedList sources = new LinkedList();
+	it = inDegree.keySet().iterator();
+	while (it.hasNext()) {
+	    Object vertex = it.next();
+	    if (((int[])inDegree.get(vertex))[0] == 0)
+		sources.add(vertex);
+	}
+	int count = 0;
+	while (!sources.isEmpty()) {
+	    Object vertex = sources.removeFirst();
+	    count++;
+	    it = ((List)successors.get(vertex)).iterator();
+	    while (it.hasNext()) {
+		Object successor = it.next();
+		if (--((int[])inDegree.get(successor))[0] == 0)
+		    sources.add(successor);
+	    }
+	}
+	return count == successors.size();
+    }
+
+    private static void fail(DynamicFeedbackSet set, String message) {
+	System.out.println(set.getClass().getName() + ": " + message);
+	failures++;
+    }
+
+}
@@ -0,0 +1,236 @@
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.graph.*;
+import org._3pq.jgrapht.edge.*;
+
+import feedback.*;
+import grasp.*;
+
+/**
+ * checks the exact solvers against brute-force enumeration on small random graphs
+ */
+public class ExactTest {
+
+    private static Random rand = new Random(17);
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+	for (int i = 0; i < 300; i++) {
+	    testFVS(createVertexGraph(3 + rand.nextInt(7), rand.nextDouble() * 0.4));
+	    testFES(createEdgeGraph(4 + rand.nextInt(4), 8 + rand.nextInt(9)));
+	    if (i % 10 == 0)
+		System.out.print(".");
+	}
+	System.out.println("\nfailures: " + failures);
+	if (failures > 0)
+	    throw new RuntimeException(failures + " exact solutions were not minimum");
+    }
+
+    private static void testFVS(FeedbackVertexGraph g) {
+	double minimum = findMinimumFVS(g);
+	g.init();
+	FVSProblem problem = new FVSProblem(g, new FeedbackVertexReducer(FeedbackVertexReducer.reduceFull));
+	checkFVS("BranchAndBoundFVS", g, problem, minimum,
+		 new BranchAndBoundFVS(new FeedbackVertexReducer(FeedbackVertexReducer.reduceFull),
+				       BranchAndBoundFVS.DEFAULT_NODE_LIMIT).solve(g));
+	checkFVS("FVSProblem", g, problem, minimum, (Set)problem.solveExactly());
+    }
+
+    /**
+     * @param minimum weight of a minimum FVS, -1 if there is none
+     */
+    private static void checkFVS(String name, FeedbackVertexGraph g, FVSProblem problem,
+				 double minimum, Set fvs) {
+	if (fvs == null) {
+	    if (minimum != -1)
+		fail(name, "no FVS found, minimum " + minimum, g);
+	    return;
+	}
+	boolean[] removed = new boolean[g.vertexSet().size()];
+	Iterator it = fvs.iterator();
+	while (it.hasNext()) {
+	    int v = ((Integer)it.next()).intValue();
+	    if (((FeedbackVertex)g.getVertex(new Integer(v))).getWeight() == FeedbackVertex.infinity)
+		fail(name, "infinity vertex " + v + " taken", g);
+	    removed[v] = true;
+	}
+	if (minimum == -1)
+	    fail(name, "FVS " + fvs + " found, but there is none", g);
+	else if (!isAcyclic(getAdjacency(g), removed))
+	    fail(name, fvs + " is no FVS", g);
+	else if (Math.abs(problem.getSolutionWeight(fvs) - minimum) > 1e-9)
+	    fail(name, "weight " + problem.getSolutionWeight(fvs) + ", minimum " + minimum, g);
+    }
+
+    private static void testFES(DirectedGraph g) {
+	double minimum = findMinimumFES(g);
+	// one iteration: a result that is not minimum cannot come from sampling many times
+	FeedbackSets feedbackSets = new FeedbackSets(1);
+	Set fes = feedbackSets.findGreedyFeedbackEdgeSet(g, 1, 0);
+	double weight = 0;
+	Iterator it = fes.iterator();
+	while (it.hasNext())
+	    weight += ((Edge)it.next()).getWeight();
+	if (!isAcyclic(g, fes))
+	    fail("FeedbackSets", fes + " is no FES", g);
+	else if (Math.abs(weight - minimum) > 1e-9)
+	    fail("FeedbackSets", "weight " + weight + ", minimum " + minimum, g);
+    }
+
+    /**
+     * @return the weight of a minimum FVS without infinity vertices, -1 if there is none
+     */
+    private static double findMinimumFVS(FeedbackVertexGraph g) {
+	int n = g.vertexSet().size();
+	boolean[][] adjacency = getAdjacency(g);
+	double[] weight = new double[n];
+	for (int v = 0; v < n; v++)
+	    weight[v] = ((FeedbackVertex)g.getVertex(new Integer(v))).getWeight();
+	double minimum = -1;
+	boolean[] removed = new boolean[n];
+	for (int subset = 0; subset < 1 << n; subset++) {
+	    double sum = 0;
+	    boolean allowed = true;
+	    for (int v = 0; v < n; v++) {
+		removed[v] = (subset & 1 << v) != 0;
+		if (removed[v]) {
+		    allowed &= weight[v] != FeedbackVertex.infinity;
+		    sum += weight[v];
+		}
+	    }
+	    if (allowed && (minimum == -1 || sum < minimum) && isAcyclic(adjacency, removed))
+		minimum = sum;
+	}
+	return minimum;
+    }
+
+    /**
+     * @return the weight of a minimum FES
+     */
+    private static double findMinimumFES(DirectedGraph g) {
+	Edge[] edges = (Edge[])g.edgeSet().toArray(new Edge[0]);
+	double minimum = Double.MAX_VALUE;
+	for (int subset = 0; subset < 1 << edges.length; subset++) {
+	    Set fes = new HashSet();
+	    double sum = 0;
+	    for (int e = 0; e < edges.length; e++)
+		if ((subset & 1 << e) != 0) {
+		    fes.add(edges[e]);
+		    sum += edges[e].getWeight();
+		}
+	    if (sum < minimum && isAcyclic(g, fes))
+		minimum = sum;
+	}
+	return minimum;
+    }
+
+    /**
+     * @return adjacency matrix of g, whose vertices have the IDs 0..n-1
+     */
+    private static boolean[][] getAdjacency(FeedbackVertexGraph g) {
+	int n = g.vertexSet().size();
+	boolean[][] adjacency = new boolean[n][n];
+	Iterator it = g.edgeSet().iterator();
+	while (it.hasNext()) {
+	    Edge edge = (Edge)it.next();
+	    int source = ((Integer)((FeedbackVertex)edge.getSource()).getID().iterator().next()).intValue();
+	    int target = ((Integer)((FeedbackVertex)edge.getTarget()).getID().iterator().next()).intValue();
+	    adjacency[source][target] = true;
+	}
+	return adjacency;
+    }
+
+    /**
+     * @return true if g has no cycle once the edges in fes are removed; vertices are Integers 0..n-1
+     */
+    private static boolean isAcyclic(DirectedGraph g, Set fes) {
+	int n = g.vertexSet().size();
+	boolean[][] adjacency = new boolean[n][n];
+	Iterator it = g.edgeSet().iterator();
+	while (it.hasNext()) {
+	    Edge edge = (Edge)it.next();
+	    if (!fes.contains(edge))
+		adjacency[((Integer)edge.getSource()).intValue()][((Integer)edge.getTarget()).intValue()] = true;
+	}
+	return isAcyclic(adjacency, new boolean[n]);
+    }
+
+    /**
+     * @return true if the vertices not removed induce an acyclic graph
+     */
+    private static boolean isAcyclic(boolean[][] adjacency, boolean[] removed) {
+	int n = removed.length;
+	int[] inDegree = new int[n];
+	for (int u = 0; u < n; u++)
+	    for (int v = 0; v < n; v++)
+		if (!removed[u] && !removed[v] && adjacency[u][v])
+		    inDegree[v]++;
+	// repeatedly remove a vertex without predecessors
+	boolean[] done = (boolean[])removed.clone();
+	boolean progress = true;
+	while (progress) {
+	    progress = false;
+	    for (int u = 0; u < n; u++)
+		if (!done[u] && inDegree[u] == 0) {
+		    done[u] = true;
+		    progress = true;
+		    for (int v = 0; v < n; v++)
+			if (adjacency[u][v])
+			    inDegree[v]--;
+		}
+	}
+	for (int u = 0; u < n; u++)
+	    if (!done[u])
+		return false;
+	return true;
+    }
+
+    /**
+     * @param infinityRate share of vertices that must not be taken
+     * @return a graph with vertex IDs 0..vertexNr-1 and random weights in ]0;1] or infinity
+     */
+    private static FeedbackVertexGraph createVertexGraph(int vertexNr, double infinityRate) {
+	FeedbackVertexGraph g = new FeedbackVertexGraph();
+	FeedbackVertex[] vertices = new FeedbackVertex[vertexNr];
+	for (int i = 0; i < vertexNr; i++) {
+	    double weight = rand.nextDouble() < infinityRate ? FeedbackVertex.infinity : 1.0 - rand.nextDouble();
+	    vertices[i] = new FeedbackVertex(weight, i);
+	    g.addVertex(vertices[i]);
+	}
+	int edgeNr = rand.nextInt(vertexNr * (vertexNr - 1) / 2 + 1);
+	for (int e = 0; e < edgeNr; e++) {
+	    int source = rand.nextInt(vertexNr);
+	    int target = rand.nextInt(vertexNr);
+	    if (source != target && !g.containsEdge(vertices[source], vertices[target]))
+		g.addEdge(vertices[source], vertices[target]);
+	}
+	return g;
+    }
+
+    /**
+     * @return a graph with vertices 0..vertexNr-1 and random edge weights in ]0;1]
+     */
+    private static DirectedGraph createEdgeGraph(int vertexNr, int edgeNr) {
+	SimpleDirectedWeightedGraph g = new SimpleDirectedWeightedGraph();
+	Integer[] vertices = new Integer[vertexNr];
+	for (int i = 0; i < vertexNr; i++) {
+	    vertices[i] = new Integer(i);
+	    g.addVertex(vertices[i]);
+	}
+	edgeNr = Math.min(edgeNr, vertexNr * (vertexNr - 1));
+	while (g.edgeSet().size() < edgeNr) {
+	    Integer source = vertices[rand.nextInt(vertexNr)];
+	    Integer target = vertices[rand.nextInt(vertexNr)];
+	    if (source != target && !g.containsEdge(source, target))
+		g.addEdge(new DirectedWeightedEdge(source, target, 1.0 - rand.nextDouble()));
+	}
+	return g;
+    }
+
+    private static void fail(String name, String message, Graph g) {
+	System.out.println(name + ": " + message + " on " + g);
+	failures++;
+    }
+
+}
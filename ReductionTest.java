@@ -1,5 +1,7 @@
 import java.util.*;
 
+import org._3pq.jgrapht.*;
+
 import feedback.*;
 import grasp.*;
 
@@ -22,6 +24,13 @@ public class ReductionTest {
 	test(createGraph(new double[] {1,1,1},
 			 new int[][] {{0,1}, {1,2}, {2,0}}));
 	*/
+	// graph structures under random changes
+	for (int i = 0; i < 50; i++)
+	    testConsistency(i);
+	System.out.println("consistency ok");
+	for (int i = 0; i < 200; i++)
+	    testParallelVertexFinder(i);
+	System.out.println("parallel vertices ok");
 	// random tests..
 	for (int i = 0; i < 100; i++) {
 	    //test(1000, 2000);
@@ -86,6 +95,213 @@ public class ReductionTest {
 	}
     }
 
+    /**
+     * applies random changes, batches and undos to a graph, checking its connect numbers, its
+     * successor index and its parallel vertices after each step; reduceFull must then leave no
+     * parallel vertices
+     */
+    private static void testConsistency(int seed) {
+	Random rand = new Random(seed);
+	FeedbackVertexGraph g = new RandomGraphGenerator(seed).generateFeedbackVertexGraph(30, 90, true, 10);
+	g.init();
+	g.trackParallelVertices();
+	LinkedList marks = new LinkedList();
+	for (int step = 0; step < 80 && g.vertexSet().size() > 3; step++) {
+	    int op = rand.nextInt(10);
+	    if (op == 0) {
+		// undo expects a reduced graph at the mark
+		new FeedbackVertexReducer(FeedbackVertexReducer.reduceFull).reduce(g, new HashSet());
+		marks.addFirst(new Integer(g.mark()));
+	    }
+	    else if (op == 1 && !marks.isEmpty())
+		g.undo(((Integer)marks.removeFirst()).intValue());
+	    else if (op == 2) {
+		// several changes as one batch
+		g.startBatch();
+		try {
+		    for (int i = rand.nextInt(5); i >= 0; i--)
+			changeGraph(g, rand);
+		} finally {
+		    g.finishBatch();
+		}
+	    } else
+		changeGraph(g, rand);
+	    checkConsistency(g);
+	}
+	if (!marks.isEmpty()) {
+	    g.undo(((Integer)marks.getLast()).intValue());
+	    checkConsistency(g);
+	}
+	new FeedbackVertexReducer(FeedbackVertexReducer.reduceFull).reduce(g, new HashSet());
+	checkConsistency(g);
+	Iterator it = g.vertexSet().iterator();
+	while (it.hasNext()) {
+	    Object vertex = it.next();
+	    if (!findParallelVertices(g, vertex).isEmpty())
+		throw new RuntimeException("reduceFull left vertices parallel to " + vertex);
+	}
+    }
+
+    private static int nextID = 1000;
+
+    /**
+     * compares ParallelVertexFinder with a comparison of the neighbours of all vertices
+     */
+    private static void testParallelVertexFinder(int seed) {
+	Random rand = new Random(seed);
+	int vertexNr = 1 + rand.nextInt(30);
+	FeedbackVertexGraph g = new FeedbackVertexGraph();
+	FeedbackVertex[] vertices = new FeedbackVertex[vertexNr];
+	for (int i = 0; i < vertexNr; i++) {
+	    vertices[i] = new FeedbackVertex(1, i);
+	    g.addVertex(vertices[i]);
+	}
+	for (int i = rand.nextInt(4 * vertexNr); i > 0; i--) {
+	    FeedbackVertex source = vertices[rand.nextInt(vertexNr)];
+	    FeedbackVertex target = vertices[rand.nextInt(vertexNr)];
+	    if (source != target && !g.containsEdge(source, target))
+		g.addEdge(source, target);
+	}
+	Map parallel = new ParallelVertexFinder().findParallelVertices(g);
+	for (int i = 0; i < vertexNr; i++) {
+	    Set expected = findParallelVertices(g, vertices[i]);
+	    expected.add(vertices[i]);
+	    if (!expected.equals(parallel.get(vertices[i])))
+		throw new RuntimeException(vertices[i] + " should be parallel to " + expected
+					   + ", not " + parallel.get(vertices[i]));
+	}
+    }
+
+    /**
+     * removes a vertex or an edge, adds edges, removes a vertex bridging its edges, adds a vertex
+     * parallel to another one, or merges two parallel vertices
+     */
+    private static void changeGraph(FeedbackVertexGraph g, Random rand) {
+	Object[] vertices = g.vertexSet().toArray();
+	Object v = vertices[rand.nextInt(vertices.length)];
+	Object w = vertices[rand.nextInt(vertices.length)];
+	switch (rand.nextInt(7)) {
+	case 0:
+	    g.removeVertex(v);
+	    break;
+	case 1:
+	    if (g.outDegreeOf(v) > 0)
+		g.removeEdge((Edge)g.outgoingEdgesOf(v).get(rand.nextInt(g.outDegreeOf(v))));
+	    break;
+	case 2:
+	    // an infinity vertex on a 2-cycle would leave a loop
+	    Iterator it = g.outgoingEdgesOf(v).iterator();
+	    while (it.hasNext())
+		if (g.containsEdge(((Edge)it.next()).getTarget(), v))
+		    return;
+	    g.removeInfinityVertex(v);
+	    break;
+	case 3:
+	    List parallel = g.getParallelVertices(v);
+	    if (!parallel.isEmpty())
+		g.mergeVertices((FeedbackVertex)v, (FeedbackVertex)parallel.get(0));
+	    break;
+	case 4:
+	    Object[] sources = new Object[3], targets = new Object[3];
+	    for (int i = 0; i < 3; i++) {
+		sources[i] = vertices[rand.nextInt(vertices.length)];
+		targets[i] = vertices[rand.nextInt(vertices.length)];
+		if (sources[i] == targets[i])
+		    return;
+	    }
+	    g.addEdges(sources, targets);
+	    break;
+	case 5:
+	    FeedbackVertex copy = new FeedbackVertex(1, nextID++);
+	    g.addVertex(copy);
+	    Object[] predecessors = getPredecessors(g, v).toArray();
+	    Object[] successors = getSuccessors(g, v).toArray();
+	    g.addEdges(predecessors, fill(copy, predecessors.length));
+	    g.addEdges(fill(copy, successors.length), successors);
+	    break;
+	default:
+	    if (v != w && !g.containsEdge(v, w))
+		g.addEdge(v, w);
+	}
+    }
+
+    /**
+     * compares the connect numbers with recomputed ones, getEdge with the edge lists and
+     * getParallelVertices with a comparison of all neighbours
+     */
+    private static void checkConsistency(FeedbackVertexGraph g) {
+	Iterator it = g.edgeSet().iterator();
+	while (it.hasNext()) {
+	    FVSEdge edge = (FVSEdge)it.next();
+	    int preConnect = 0, succConnect = 0;
+	    Iterator edges = g.incomingEdgesOf(edge.getSource()).iterator();
+	    while (edges.hasNext())
+		if (!g.containsEdge(((Edge)edges.next()).getSource(), edge.getTarget()))
+		    preConnect++;
+	    edges = g.outgoingEdgesOf(edge.getTarget()).iterator();
+	    while (edges.hasNext())
+		if (!g.containsEdge(edge.getSource(), ((Edge)edges.next()).getTarget()))
+		    succConnect++;
+	    if (preConnect != edge.getPreConnect() || succConnect != edge.getSuccConnect())
+		throw new RuntimeException(edge + " should have connect numbers " + preConnect + "/" + succConnect);
+	}
+	Object[] vertices = g.vertexSet().toArray();
+	for (int i = 0; i < vertices.length; i++) {
+	    for (int j = 0; j < vertices.length; j++) {
+		Edge scanned = null;
+		Iterator edges = g.outgoingEdgesOf(vertices[i]).iterator();
+		while (edges.hasNext()) {
+		    Edge edge = (Edge)edges.next();
+		    if (edge.getTarget() == vertices[j])
+			scanned = edge;
+		}
+		if (g.getEdge(vertices[i], vertices[j]) != scanned)
+		    throw new RuntimeException("getEdge(" + vertices[i] + ", " + vertices[j] + ") is not " + scanned);
+	    }
+	    Set parallel = new HashSet(g.getParallelVertices(vertices[i]));
+	    if (!parallel.equals(findParallelVertices(g, vertices[i])))
+		throw new RuntimeException(vertices[i] + " should be parallel to "
+					   + findParallelVertices(g, vertices[i]) + ", not " + parallel);
+	}
+    }
+
+    /**
+     * @return the vertices other than vertex with the same predecessors and successors
+     */
+    private static Set findParallelVertices(FeedbackVertexGraph g, Object vertex) {
+	Set parallel = new HashSet();
+	Iterator it = g.vertexSet().iterator();
+	while (it.hasNext()) {
+	    Object other = it.next();
+	    if (other != vertex && getPredecessors(g, other).equals(getPredecessors(g, vertex))
+		&& getSuccessors(g, other).equals(getSuccessors(g, vertex)))
+		parallel.add(other);
+	}
+	return parallel;
+    }
+
+    private static Object[] fill(Object element, int length) {
+	Object[] array = new Object[length];
+	Arrays.fill(array, element);
+	return array;
+    }
+
+    private static Set getPredecessors(FeedbackVertexGraph g, Object vertex) {
+	Set predecessors = new HashSet();
+	Iterator it = g.incomingEdgesOf(vertex).iterator();
+	while (it.hasNext())
+	    predecessors.add(((Edge)it.next()).getSource());
+	return predecessors;
+    }
+
+    private static Set getSuccessors(FeedbackVertexGraph g, Object vertex) {
+	Set successors = new HashSet();
+	Iterator it = g.outgoingEdgesOf(vertex).iterator();
+	while (it.hasNext())
+	    successors.add(((Edge)it.next()).getTarget());
+	return successors;
+    }
+
     private static FeedbackVertexGraph createGraph(double[] weights, int[][] edges) {
 	FeedbackVertexGraph g = new FeedbackVertexGraph();
 	// create vertices
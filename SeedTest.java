@@ -0,0 +1,197 @@
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.graph.*;
+import org._3pq.jgrapht.edge.*;
+
+import feedback.*;
+import grasp.*;
+
+/**
+ * checks that seeded solves are reproducible: repeating a call with the same seed on the same
+ * solver instance must give the same result; the FVS found on a CSRFVSProblem is also checked
+ * against the original graph and FVSProblem
+ */
+public class SeedTest {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+	for (int i = 0; i < 30; i++) {
+	    testGRASPSolver(new RandomGraphGenerator(i).generateFeedbackVertexGraph(100, 300, true, 5));
+	    testFeedbackSets(createWeightedGraph(new Random(i), 60, 180));
+	    testComponentSolver(createComponentGraph(new Random(i)));
+	    testCSRFVSProblem(new RandomGraphGenerator(i).generateFeedbackVertexGraph(30, 80, true, 5));
+	    System.out.print(".");
+	}
+	System.out.println("\nfailures: " + failures);
+	if (failures > 0)
+	    throw new RuntimeException(failures + " checks of seeded calls failed");
+    }
+
+    private static void testGRASPSolver(FeedbackVertexGraph g) {
+	g.init();
+	FVSProblem problem = new FVSProblem(g);
+	problem.reduce();
+	GRASPSolver solver = new GRASPSolver();
+	Object first = solver.solve(problem, 40, 3, 42);
+	Object second = solver.solve(problem, 40, 3, 42);
+	check("GRASPSolver", first, second);
+    }
+
+    /**
+     * the FVS must be one, without redundant vertices, weigh the same for FVSProblem
+     * and not less than the minimum FVSProblem finds
+     */
+    private static void testCSRFVSProblem(FeedbackVertexGraph g) {
+	g.init();
+	CSRFVSProblem problem = new CSRFVSProblem(g);
+	problem.reduce();
+	GRASPSolver solver = new GRASPSolver();
+	Set fvs = (Set)solver.solve(problem, 40, 3, 42);
+	check("CSRFVSProblem", fvs, solver.solve(problem, 40, 3, 42));
+	int n = g.vertexSet().size();
+	boolean[][] adjacency = new boolean[n][n];
+	Iterator it = g.edgeSet().iterator();
+	while (it.hasNext()) {
+	    Edge edge = (Edge)it.next();
+	    adjacency[getIndex(edge.getSource())][getIndex(edge.getTarget())] = true;
+	}
+	boolean[] removed = new boolean[n];
+	it = fvs.iterator();
+	while (it.hasNext())
+	    removed[((Integer)it.next()).intValue()] = true;
+	if (!isAcyclic(adjacency, removed))
+	    fail("CSRFVSProblem", fvs + " is no FVS");
+	for (int v = 0; v < n; v++)
+	    if (removed[v]) {
+		removed[v] = false;
+		if (isAcyclic(adjacency, removed))
+		    fail("CSRFVSProblem", v + " is redundant in " + fvs);
+		removed[v] = true;
+	    }
+	FVSProblem reference = new FVSProblem(g);
+	double weight = problem.getSolutionWeight(fvs);
+	if (Math.abs(weight - reference.getSolutionWeight(fvs)) > 1e-9)
+	    fail("CSRFVSProblem", "weight " + weight + ", FVSProblem " + reference.getSolutionWeight(fvs));
+	Set minimum = (Set)reference.solveExactly();
+	if (minimum != null && weight < reference.getSolutionWeight(minimum) - 1e-9)
+	    fail("CSRFVSProblem", "weight " + weight + " below minimum " + reference.getSolutionWeight(minimum));
+    }
+
+    /**
+     * @return the ID of a vertex of a graph from RandomGraphGenerator
+     */
+    private static int getIndex(Object vertex) {
+	return ((Integer)((FeedbackVertex)vertex).getID().iterator().next()).intValue();
+    }
+
+    /**
+     * @return true if the vertices not removed induce an acyclic graph
+     */
+    private static boolean isAcyclic(boolean[][] adjacency, boolean[] removed) {
+	int n = removed.length;
+	int[] inDegree = new int[n];
+	for (int u = 0; u < n; u++)
+	    for (int v = 0; v < n; v++)
+		if (!removed[u] && !removed[v] && adjacency[u][v])
+		    inDegree[v]++;
+	// repeatedly remove a vertex without predecessors
+	boolean[] done = (boolean[])removed.clone();
+	boolean progress = true;
+	while (progress) {
+	    progress = false;
+	    for (int u = 0; u < n; u++)
+		if (!done[u] && inDegree[u] == 0) {
+		    done[u] = true;
+		    progress = true;
+		    for (int v = 0; v < n; v++)
+			if (adjacency[u][v])
+			    inDegree[v]--;
+		}
+	}
+	for (int u = 0; u < n; u++)
+	    if (!done[u])
+		return false;
+	return true;
+    }
+
+    /**
+     * the instance is shared by both calls, as by the threads of a server
+     */
+    private static FeedbackSets feedbackSets = new FeedbackSets(30);
+
+    private static void testFeedbackSets(DirectedGraph g) {
+	Set first = feedbackSets.findGreedyFeedbackEdgeSet(g, 3, 42);
+	Set second = feedbackSets.findGreedyFeedbackEdgeSet(g, 3, 42);
+	check("FeedbackSets", first, second);
+    }
+
+    private static void testComponentSolver(DirectedGraph g) {
+	ComponentSolver solver = new ComponentSolver(4);
+	// statistics carried between calls must not leak into the components
+	FeedbackSets shared = new FeedbackSets(30);
+	shared.setCarryStatistics(true);
+	Set first = solver.findFeedbackEdgeSet(g, shared, 99);
+	Set second = solver.findFeedbackEdgeSet(g, shared, 99);
+	check("ComponentSolver", first, second);
+    }
+
+    /**
+     * @return several disjoint random graphs of different size and weight scale, with a few
+     * edges from each to the next, so they form separate strongly connected components
+     */
+    private static DirectedGraph createComponentGraph(Random rand) {
+	SimpleDirectedWeightedGraph g = new SimpleDirectedWeightedGraph();
+	Object last = null;
+	for (int c = 0; c < 5; c++) {
+	    DirectedGraph part = createWeightedGraph(rand, 20 + 10 * c, 3 * (20 + 10 * c));
+	    Iterator it = part.vertexSet().iterator();
+	    Object[] vertices = new Object[part.vertexSet().size()];
+	    HashMap copies = new HashMap();
+	    for (int i = 0; it.hasNext(); i++) {
+		vertices[i] = new Object();
+		copies.put(it.next(), vertices[i]);
+		g.addVertex(vertices[i]);
+	    }
+	    it = part.edgeSet().iterator();
+	    while (it.hasNext()) {
+		Edge edge = (Edge)it.next();
+		g.addEdge(new DirectedWeightedEdge(copies.get(edge.getSource()), copies.get(edge.getTarget()),
+						   (c + 1) * edge.getWeight()));
+	    }
+	    if (last != null)
+		g.addEdge(new DirectedWeightedEdge(last, vertices[0], 1));
+	    last = vertices[vertices.length - 1];
+	}
+	return g;
+    }
+
+    /**
+     * @return a graph with random edge weights in ]0;1]
+     */
+    private static DirectedGraph createWeightedGraph(Random rand, int vertexNr, int edgeNr) {
+	SimpleDirectedWeightedGraph g = new SimpleDirectedWeightedGraph();
+	for (int i = 0; i < vertexNr; i++)
+	    g.addVertex(new Integer(i));
+	Object[] vertices = g.vertexSet().toArray();
+	while (g.edgeSet().size() < edgeNr) {
+	    Object source = vertices[rand.nextInt(vertexNr)];
+	    Object target = vertices[rand.nextInt(vertexNr)];
+	    if (source != target && !g.containsEdge(source, target))
+		g.addEdge(new DirectedWeightedEdge(source, target, 1.0 - rand.nextDouble()));
+	}
+	return g;
+    }
+
+    private static void check(String name, Object first, Object second) {
+	if (!first.equals(second))
+	    fail(name, first + " != " + second);
+    }
+
+    private static void fail(String name, String message) {
+	System.out.println(name + ": " + message);
+	failures++;
+    }
+
+}
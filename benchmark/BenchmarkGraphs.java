@@ -0,0 +1,56 @@
+package benchmark;
+
+import org._3pq.jgrapht.*;
+
+import feedback.*;
+import contract.*;
+import randomgraph.*;
+
+/**
+ * creates the random input graphs of the benchmarks; all graphs are generated from fixed seeds,
+ * so every fork measures the same instances
+ */
+public class BenchmarkGraphs {
+
+    public static final long SEED = 4711;
+
+    /**
+     * @param size number of vertices
+     * @param density number of edges per vertex
+     * @param locality maximal index difference between adjacent vertices, 0 for none
+     * @return a weighted random FeedbackVertexGraph, initialized for reduction
+     */
+    public static FeedbackVertexGraph feedbackVertexGraph(int size, int density, int locality) {
+	if (locality <= 0)
+	    locality = size;
+	FeedbackVertexGraph g = new RandomGraphGenerator((int)SEED)
+	    .generateFeedbackVertexGraph(size, size * density, true, locality);
+	g.init();
+	return g;
+    }
+
+    /**
+     * @param size number of vertices
+     * @param density number of backward arcs per 10 vertices
+     * @return a random reducible flow graph with a single leaf
+     */
+    public static DirectedGraph rfg(int size, int density) {
+	int bArcNr = Math.max(1, size * density / 10);
+	int fcArcNr = Math.max(0, size + 1 - bArcNr);
+	return new RandomRFG(SEED).createRandomRFG(size, fcArcNr, bArcNr, true);
+    }
+
+    /**
+     * @return a ContractGraph with unweighted arcs, as used by TestFS
+     */
+    public static ContractGraph contractGraph(DirectedGraph g, boolean transformed) {
+	ContractGraph cg = new ContractGraph();
+	cg.addAllVertices(g.vertexSet());
+	cg.addAllEdges(g.edgeSet());
+	cg.weightArcs(false);
+	if (transformed)
+	    cg = new FS2FVS().transform(cg);
+	return cg;
+    }
+
+}
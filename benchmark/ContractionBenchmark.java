@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.util.concurrent.*;
+
+import org._3pq.jgrapht.*;
+import org.openjdk.jmh.annotations.*;
+
+import contract.*;
+import fcr.*;
+
+/**
+ * measures the FS, WFS and LL contractions on random reducible flow graphs, set up as in TestFS;
+ * each invocation works on a fresh ContractGraph, its construction is not measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ContractionBenchmark {
+
+    @Param({"100", "1000"})
+    public int size;
+
+    @Param({"2", "5"})
+    public int density;
+
+    @Param({"FS", "WFS", "LL"})
+    public String algorithm;
+
+    private DirectedGraph rfg;
+    private ContractGraph graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	rfg = BenchmarkGraphs.rfg(size, density);
+    }
+
+    @Setup(Level.Invocation)
+    public void createContractGraph() {
+	// LL works on the transformed graph
+	graph = BenchmarkGraphs.contractGraph(rfg, algorithm.equals("LL"));
+    }
+
+    private FCRAlgorithm createAlgorithm() {
+	if (algorithm.equals("FS"))
+	    return new FSAlgorithm();
+	if (algorithm.equals("WFS"))
+	    return new WFSAlgorithm();
+	if (algorithm.equals("LL"))
+	    return new LLAlgorithm();
+	throw new IllegalArgumentException("unknown algorithm: " + algorithm);
+    }
+
+    @Benchmark
+    public int contract() {
+	createAlgorithm().run(graph);
+	return graph.getFONr();
+    }
+
+}
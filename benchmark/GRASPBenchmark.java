@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import feedback.*;
+import grasp.*;
+
+/**
+ * measures complete GRASP runs for FVS and FES
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class GRASPBenchmark {
+
+    @Param({"200", "1000"})
+    public int size;
+
+    @Param({"2", "4"})
+    public int density;
+
+    @Param({"10", "0"})
+    public int locality;
+
+    @Param({"10"})
+    public int iterations;
+
+    private FeedbackVertexGraph graph;
+    private FVSProblem problem;
+    private CSRFVSProblem csrProblem;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	graph = BenchmarkGraphs.feedbackVertexGraph(size, density, locality);
+	problem = new FVSProblem(graph);
+	problem.reduce();
+	csrProblem = new CSRFVSProblem(graph);
+	csrProblem.reduce();
+    }
+
+    @Benchmark
+    public Object solveFVS() {
+	return new GRASPSolver(new WeightPercentageRCLConstructor(0.8)).solve(problem, iterations);
+    }
+
+    @Benchmark
+    public Object solveFVSReactive() {
+	return new GRASPSolver().solve(problem, iterations);
+    }
+
+    @Benchmark
+    public Object solveCSRFVS() {
+	return new GRASPSolver(new WeightPercentageRCLConstructor(0.8)).solve(csrProblem, iterations);
+    }
+
+    @Benchmark
+    public Set findGreedyFeedbackEdgeSet() {
+	return new FeedbackSets(iterations, 0.8).findGreedyFeedbackEdgeSet(graph);
+    }
+
+    @Benchmark
+    public Set findOrderingFeedbackEdgeSet() {
+	return new FeedbackSets(iterations, 0.8).findOrderingFeedbackEdgeSet(graph);
+    }
+
+    @Benchmark
+    public Set solveFVSByComponents() {
+	return new ComponentSolver(Runtime.getRuntime().availableProcessors())
+	    .findFeedbackVertexSet(graph, iterations, BenchmarkGraphs.SEED);
+    }
+
+    @Benchmark
+    public Set findFESByComponents() {
+	return new ComponentSolver(Runtime.getRuntime().availableProcessors())
+	    .findFeedbackEdgeSet(graph, new FeedbackSets(iterations, 0.8), BenchmarkGraphs.SEED);
+    }
+
+}
@@ -0,0 +1,50 @@
+package benchmark;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import feedback.*;
+
+/**
+ * measures ParallelVertexFinder.findParallelClasses on the edge arrays of the graphs of
+ * ReducerBenchmark; the arrays are only read, so they are set up once per trial
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PartitionBenchmark {
+
+    @Param({"200", "1000"})
+    public int size;
+
+    @Param({"1", "2", "4"})
+    public int density;
+
+    @Param({"10", "0"})
+    public int locality;
+
+    private int vertexNr;
+    private int[] source, target;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	CSRGraph csrGraph = new CSRGraph(BenchmarkGraphs.feedbackVertexGraph(size, density, locality));
+	vertexNr = csrGraph.getVertexNr();
+	source = new int[csrGraph.getEdgeNr()];
+	target = new int[csrGraph.getEdgeNr()];
+	for (int e = 0; e < source.length; e++) {
+	    source[e] = csrGraph.getSource(e);
+	    target[e] = csrGraph.getTarget(e);
+	}
+    }
+
+    @Benchmark
+    public Partition findParallelClasses() {
+	return ParallelVertexFinder.findParallelClasses(vertexNr, source, target);
+    }
+
+}
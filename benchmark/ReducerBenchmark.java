@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import feedback.*;
+
+/**
+ * measures the reduction modes of FeedbackVertexReducer and ParallelVertexFinder;
+ * the reduction works on a fresh clone of the graph for each invocation, cloning is not
+ * measured; ParallelVertexFinder only reads the graph, so it uses the same graph all trial
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ReducerBenchmark {
+
+    /**
+     * the graph, set up once per trial; benchmarks must not change it
+     */
+    @State(Scope.Benchmark)
+    public static class GraphState {
+
+	@Param({"200", "1000"})
+	public int size;
+
+	@Param({"1", "2", "4"})
+	public int density;
+
+	@Param({"10", "0"})
+	public int locality;
+
+	private FeedbackVertexGraph graph;
+
+	@Setup(Level.Trial)
+	public void setup() {
+	    graph = BenchmarkGraphs.feedbackVertexGraph(size, density, locality);
+	}
+    }
+
+    /**
+     * a clone of the graph for each invocation, for benchmarks that change it
+     */
+    @State(Scope.Benchmark)
+    public static class CloneState {
+
+	@Param({"0", "1", "2"})
+	public int reductionMethod;
+
+	private FeedbackVertexGraph clone;
+
+	@Setup(Level.Invocation)
+	public void cloneGraph(GraphState state) {
+	    clone = (FeedbackVertexGraph)state.graph.clone();
+	}
+    }
+
+    @Benchmark
+    public Set reduce(CloneState state) {
+	Set fvs = new HashSet();
+	new FeedbackVertexReducer(state.reductionMethod).reduce(state.clone, fvs);
+	return fvs;
+    }
+
+    @Benchmark
+    public Map findParallelVertices(GraphState state) {
+	return new ParallelVertexFinder().findParallelVertices(state.graph);
+    }
+
+}
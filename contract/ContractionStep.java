@@ -35,7 +35,6 @@ public abstract class ContractionStep implements FCRStep {
 	    // make sure step can be applied
 	    if (canApply(obj)) {
 		apply(obj, g);
-		System.out.println(this + "(" + obj + ") --> " + g);
 		return true;
 	    }
 	}
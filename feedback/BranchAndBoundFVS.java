@@ -0,0 +1,165 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+
+/**
+ * exact FVS for small graphs by branch and bound: each node reduces the graph with the rules
+ * of a FeedbackVertexReducer, bounds it by a cycle packing and branches on a vertex, which is
+ * either put into the FVS or kept, i.e. bypassed by edges from its predecessors to its successors
+ * changes are rewound with the undo log of the graph
+ */
+public class BranchAndBoundFVS {
+
+    // graphs up to this size are solved exactly by default
+    public static final int DEFAULT_SIZE_LIMIT = 40;
+    public static final int DEFAULT_NODE_LIMIT = 5000;
+
+    private FeedbackVertexReducer reducer;
+    private int nodeLimit;
+    // state of the running search
+    private FeedbackVertexGraph graph;
+    private HashMap idWeights;
+    private WeightedSet fvs;
+    private Set best;
+    private double bestWeight;
+    private int nodes;
+
+    /**
+     * set of IDs summing up their weights; records its changes in the undo log of the graph
+     */
+    private class WeightedSet extends HashSet {
+
+	public double weight = 0;
+	// number of IDs of vertices that must not be removed
+	public int forbidden = 0;
+
+	public boolean add(final Object id) {
+	    if (!super.add(id))
+		return false;
+	    final double oldWeight = weight;
+	    final int oldForbidden = forbidden;
+	    double idWeight = ((Double)idWeights.get(id)).doubleValue();
+	    if (idWeight == FeedbackVertex.infinity)
+		forbidden++;
+	    else
+		weight += idWeight;
+	    graph.log(new FeedbackVertexGraph.UndoEntry() {
+		    public void undo() {
+			WeightedSet.super.remove(id);
+			weight = oldWeight;
+			forbidden = oldForbidden;
+		    }
+		});
+	    return true;
+	}
+    }
+
+    public BranchAndBoundFVS() {
+	this(new FeedbackVertexReducer(), DEFAULT_NODE_LIMIT);
+    }
+
+    /**
+     * @param reducer applied at every node of the search
+     * @param nodeLimit number of nodes after which the search gives up
+     */
+    public BranchAndBoundFVS(FeedbackVertexReducer reducer, int nodeLimit) {
+	this.reducer = reducer;
+	this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * @param g is not modified
+     * @return the IDs of a minimum FVS of g, or null if there is none or the node limit was reached
+     */
+    public Set solve(FeedbackVertexGraph g) {
+	graph = (FeedbackVertexGraph)g.clone();
+	// the weight of a vertex is kept by its first ID, so merged vertices sum up correctly
+	idWeights = new HashMap();
+	Iterator it = graph.vertexSet().iterator();
+	while (it.hasNext()) {
+	    FeedbackVertex vertex = (FeedbackVertex)it.next();
+	    Iterator ids = vertex.getID().iterator();
+	    idWeights.put(ids.next(), new Double(vertex.getWeight()));
+	    while (ids.hasNext())
+		idWeights.put(ids.next(), new Double(0));
+	}
+	fvs = new WeightedSet();
+	best = null;
+	nodes = 0;
+	branch();
+	Set result = nodes > nodeLimit ? null : best;
+	graph = null;
+	fvs = null;
+	best = null;
+	return result;
+    }
+
+    /**
+     * @return the number of nodes visited by the last search
+     */
+    public int getNodes() {
+	return nodes;
+    }
+
+    private void branch() {
+	if (++nodes > nodeLimit)
+	    return;
+	reducer.reduce(graph, fvs);
+	if (fvs.forbidden > 0 || best != null && fvs.weight >= bestWeight)
+	    return;
+	if (graph.vertexSet().isEmpty()) {
+	    best = new HashSet(fvs);
+	    bestWeight = fvs.weight;
+	    return;
+	}
+	CSRGraph csr = new CSRGraph(graph);
+	double[] weight = new double[csr.getVertexNr()];
+	for (int v = 0; v < weight.length; v++)
+	    weight[v] = csr.getWeight(v) == FeedbackVertex.infinity
+		? Double.POSITIVE_INFINITY : csr.getWeight(v);
+	double bound = ExactFeedbackSets.vertexCyclePacking(csr, weight);
+	if (best != null && fvs.weight + bound >= bestWeight || bound == Double.POSITIVE_INFINITY)
+	    return;
+	FeedbackVertex vertex = selectVertex(csr, weight);
+	int mark = graph.mark();
+	// put vertex into the FVS
+	fvs.addAll(vertex.getID());
+	graph.removeVertex(vertex);
+	branch();
+	graph.undo(mark);
+	// keep vertex: its neighbours on 2-cycles must go, then it can be bypassed
+	Object[] successors = graph.outgoingEdgesOf(vertex).toArray();
+	for (int i = 0; i < successors.length; i++) {
+	    FeedbackVertex successor = (FeedbackVertex)((Edge)successors[i]).getTarget();
+	    if (graph.containsEdge(successor, vertex)) {
+		fvs.addAll(successor.getID());
+		graph.removeVertex(successor);
+	    }
+	}
+	graph.removeInfinityVertex(vertex);
+	branch();
+	graph.undo(mark);
+    }
+
+    /**
+     * @return the removable vertex with the most cycles through it per weight, as estimated
+     * by the product of its degrees
+     */
+    private FeedbackVertex selectVertex(CSRGraph csr, double[] weight) {
+	int best = -1;
+	double bestScore = 0;
+	for (int v = 0; v < weight.length; v++) {
+	    if (weight[v] == Double.POSITIVE_INFINITY)
+		continue;
+	    double score = (double)csr.inDegreeOf(v) * csr.outDegreeOf(v) / weight[v];
+	    if (best == -1 || score > bestScore) {
+		best = v;
+		bestScore = score;
+	    }
+	}
+	return (FeedbackVertex)csr.getVertex(best);
+    }
+
+}
@@ -0,0 +1,729 @@
+package feedback;
+
+import java.util.*;
+
+import grasp.*;
+
+/**
+ * FVS problem on a CSRGraph: alternative to FVSProblem which works on plain arrays
+ * the residual graph is kept as removal masks over the CSR structure; 1-reductions contract a
+ * vertex into its cover by moving the endpoints of its edges, so no edges are ever created
+ * only 0- and 1-reductions are performed, as done by FeedbackVertexReducer.reduceSimple
+ * once mark() has been called, all changes are recorded in an undo log of ints
+ */
+public class CSRFVSProblem implements IndexedGRASPProblem, UndoableGRASPProblem, RelinkableGRASPProblem {
+
+    /**
+     * greedy object for the vertices of the residual graph
+     */
+    protected class CSRVertex implements GreedyObject {
+
+	private int index;
+
+	public CSRVertex(int index) {
+	    this.index = index;
+	}
+
+	public int getIndex() {
+	    return index;
+	}
+
+	public double getGreedyWeight() {
+	    return greedyWeight(index);
+	}
+
+	public String toString() {
+	    return "(ID=" + graph.getIDs(index) + ")";
+	}
+    }
+
+    /**
+     * view of the vertices in the residual graph
+     */
+    protected class ResidualSet extends AbstractSet {
+
+	public int size() {
+	    return liveNr;
+	}
+
+	public boolean contains(Object o) {
+	    return o instanceof CSRVertex && greedyVertices[((CSRVertex)o).getIndex()] == o
+		&& !removed[((CSRVertex)o).getIndex()];
+	}
+
+	public Iterator iterator() {
+	    return new Iterator() {
+		    private int pos = 0;
+
+		    public boolean hasNext() {
+			return pos < liveNr;
+		    }
+
+		    public Object next() {
+			if (pos >= liveNr)
+			    throw new NoSuchElementException();
+			return greedyVertices[live[pos++]];
+		    }
+
+		    public void remove() {
+			throw new UnsupportedOperationException();
+		    }
+		};
+	}
+    }
+
+    private CSRGraph graph;
+
+    // residual graph: vertices and edges not yet removed
+    private boolean[] removed, edgeRemoved;
+    // current endpoints of edges, differ from those in graph after contractions
+    private int[] edgeSource, edgeTarget;
+    private int[] inDegree, outDegree;
+    // chains of vertices whose out-/in-edges have been inherited through contraction
+    private int[] outNext, outLast, inNext, inLast;
+    // vertices of the residual graph, live[livePos[v]] == v
+    private int[] live, livePos;
+    private int liveNr;
+
+    // the FVS, as vertex indices; vertices dropped by local search stay in fvs with inFVS false
+    private int[] fvs;
+    private int fvsNr = 0;
+    private boolean[] inFVS;
+
+    // vertices to be checked for reduction
+    private int[] queue;
+    private boolean[] queued;
+    private int queueNr = 0;
+
+    // scratch space for marking vertices
+    private int[] mark;
+    private int stamp = 0;
+    // used for local search and path relinking, created on demand
+    private FVSPathRelinker relinker = null;
+
+    private CSRVertex[] greedyVertices;
+    // greedy weights of the residual vertices; touched vertices still need to be updated
+    private GreedyHeap heap;
+    private int[] touched;
+    private boolean[] isTouched;
+    private int touchedNr = 0;
+
+    // undo log: entries (operation, argument, old value), null if not recording
+    private int[] trail = null;
+    private int trailNr = 0;
+    private static final int
+	REMOVE_EDGE = 0,
+	MOVE_SOURCE = 1,
+	MOVE_TARGET = 2,
+	UNLINK      = 3,
+	OUT_CHAIN   = 4,
+	IN_CHAIN    = 5,
+	ADD_FVS     = 6,
+	DROP_FVS    = 7,
+	PUSH        = 8,
+	POP         = 9;
+
+    /**
+     * for cloning use only, don't call!
+     */
+    public CSRFVSProblem() {
+    }
+
+    public CSRFVSProblem(FeedbackVertexGraph graph) {
+	this(new CSRGraph(graph));
+    }
+
+    public CSRFVSProblem(CSRGraph graph) {
+	this.graph = graph;
+	int n = graph.getVertexNr();
+	int m = graph.getEdgeNr();
+	removed = new boolean[n];
+	edgeRemoved = new boolean[m];
+	edgeSource = new int[m];
+	edgeTarget = new int[m];
+	for (int e = 0; e < m; e++) {
+	    edgeSource[e] = graph.getSource(e);
+	    edgeTarget[e] = graph.getTarget(e);
+	}
+	inDegree = new int[n];
+	outDegree = new int[n];
+	outNext = new int[n];
+	outLast = new int[n];
+	inNext = new int[n];
+	inLast = new int[n];
+	live = new int[n];
+	livePos = new int[n];
+	for (int v = 0; v < n; v++) {
+	    inDegree[v] = graph.inDegreeOf(v);
+	    outDegree[v] = graph.outDegreeOf(v);
+	    outNext[v] = inNext[v] = -1;
+	    outLast[v] = inLast[v] = v;
+	    live[v] = livePos[v] = v;
+	}
+	liveNr = n;
+	fvs = new int[n];
+	inFVS = new boolean[n];
+	queue = new int[n];
+	queued = new boolean[n];
+	mark = new int[n];
+	createGreedyVertices();
+	heap = new GreedyHeap(n);
+	touched = new int[n];
+	isTouched = new boolean[n];
+	// vertices with loops must be in any FVS
+	for (int e = 0; e < m; e++)
+	    if (edgeSource[e] == edgeTarget[e] && !removed[edgeSource[e]]) {
+		addToFVS(edgeSource[e]);
+		removeVertex(edgeSource[e]);
+	    }
+	// init reduction vertices and greedy weights
+	for (int v = 0; v < n; v++) {
+	    if (inDegree[v] <= 1 || outDegree[v] <= 1)
+		enqueue(v);
+	    if (!removed[v])
+		heap.update(v, greedyWeight(v));
+	}
+	for (int i = 0; i < touchedNr; i++)
+	    isTouched[touched[i]] = false;
+	touchedNr = 0;
+    }
+
+    private void createGreedyVertices() {
+	greedyVertices = new CSRVertex[graph.getVertexNr()];
+	for (int v = 0; v < greedyVertices.length; v++)
+	    greedyVertices[v] = new CSRVertex(v);
+    }
+
+    public CSRGraph getGraph() {
+	return graph;
+    }
+
+    /**
+     * @return the objects available for greedy-selection
+     */
+    public Set getGreedyObjects() {
+	return new ResidualSet();
+    }
+
+    public int getGreedyObjectNr() {
+	return graph.getVertexNr();
+    }
+
+    public GreedyObject getGreedyObject(int index) {
+	return greedyVertices[index];
+    }
+
+    /**
+     * @return the heap of greedy weights, updated for all vertices touched since the last call
+     */
+    public GreedyHeap getGreedyHeap() {
+	for (int i = 0; i < touchedNr; i++) {
+	    int v = touched[i];
+	    isTouched[v] = false;
+	    if (removed[v])
+		heap.remove(v);
+	    else
+		heap.update(v, greedyWeight(v));
+	}
+	touchedNr = 0;
+	return heap;
+    }
+
+    protected double greedyWeight(int v) {
+	return Math.sqrt(inDegree[v] * outDegree[v]) / graph.getWeight(v);
+    }
+
+    /**
+     * informs the GRASP-problem of a selection
+     * @param obj is one of the elements from getGreedyObjects
+     */
+    public void selectGreedyObject(GreedyObject obj) {
+	int v = ((CSRVertex)obj).getIndex();
+	addToFVS(v);
+	removeVertex(v);
+	reduce();
+    }
+
+    // ------------------------------------------------------------------ residual graph
+
+    private void log(int operation, int argument, int oldValue) {
+	if (trail == null)
+	    return;
+	if (trailNr + 3 > trail.length) {
+	    int[] newTrail = new int[2 * trail.length];
+	    System.arraycopy(trail, 0, newTrail, 0, trailNr);
+	    trail = newTrail;
+	}
+	trail[trailNr++] = operation;
+	trail[trailNr++] = argument;
+	trail[trailNr++] = oldValue;
+    }
+
+    private void enqueue(int v) {
+	if (!queued[v] && !removed[v]) {
+	    queued[v] = true;
+	    queue[queueNr++] = v;
+	    log(PUSH, v, 0);
+	}
+    }
+
+    /**
+     * records that the greedy weight of v has changed
+     */
+    private void touch(int v) {
+	if (!isTouched[v]) {
+	    isTouched[v] = true;
+	    touched[touchedNr++] = v;
+	}
+    }
+
+    private void addToFVS(int v) {
+	inFVS[v] = true;
+	fvs[fvsNr++] = v;
+	log(ADD_FVS, v, 0);
+    }
+
+    /**
+     * @return true if v can cover vertex, as given by FeedbackVertex.smallerEqual
+     */
+    private boolean smallerEqual(int v, int vertex) {
+	double vertexWeight = graph.getWeight(vertex);
+	double weight = graph.getWeight(v);
+	if (vertexWeight == FeedbackVertex.infinity)
+	    return true;
+	if (weight == FeedbackVertex.infinity)
+	    return false;
+	return weight <= vertexWeight;
+    }
+
+    /**
+     * marks v as removed; its edges must be removed or moved separately
+     */
+    private void unlink(int v) {
+	removed[v] = true;
+	int last = live[--liveNr];
+	live[livePos[v]] = last;
+	livePos[last] = livePos[v];
+	touch(v);
+	log(UNLINK, v, 0);
+    }
+
+    private void decIn(int v) {
+	touch(v);
+	if (--inDegree[v] <= 1)
+	    enqueue(v);
+    }
+
+    private void decOut(int v) {
+	touch(v);
+	if (--outDegree[v] <= 1)
+	    enqueue(v);
+    }
+
+    private void removeEdge(int e) {
+	edgeRemoved[e] = true;
+	log(REMOVE_EDGE, e, 0);
+	decOut(edgeSource[e]);
+	decIn(edgeTarget[e]);
+    }
+
+    /**
+     * makes v the source of e, v must not have an edge to the target of e yet
+     */
+    private void moveSource(int e, int v) {
+	log(MOVE_SOURCE, e, edgeSource[e]);
+	outDegree[edgeSource[e]]--;
+	outDegree[v]++;
+	touch(v);
+	edgeSource[e] = v;
+    }
+
+    /**
+     * makes v the target of e, v must not have an edge from the source of e yet
+     */
+    private void moveTarget(int e, int v) {
+	log(MOVE_TARGET, e, edgeTarget[e]);
+	inDegree[edgeTarget[e]]--;
+	inDegree[v]++;
+	touch(v);
+	edgeTarget[e] = v;
+    }
+
+    /**
+     * removes v and all its edges from the residual graph
+     */
+    private void removeVertex(int v) {
+	unlink(v);
+	for (int m = v; m != -1; m = outNext[m])
+	    for (int e = graph.getOutStart(m); e < graph.getOutEnd(m); e++)
+		if (!edgeRemoved[e])
+		    removeEdge(e);
+	for (int m = v; m != -1; m = inNext[m])
+	    for (int i = graph.getInStart(m); i < graph.getInEnd(m); i++) {
+		int e = graph.getInEdge(i);
+		if (!edgeRemoved[e])
+		    removeEdge(e);
+	    }
+    }
+
+    /**
+     * @return the only live out-edge of v
+     */
+    private int firstOutEdge(int v) {
+	for (int m = v; m != -1; m = outNext[m])
+	    for (int e = graph.getOutStart(m); e < graph.getOutEnd(m); e++)
+		if (!edgeRemoved[e])
+		    return e;
+	throw new RuntimeException("no out-edge: " + v);
+    }
+
+    /**
+     * @return the only live in-edge of v
+     */
+    private int firstInEdge(int v) {
+	for (int m = v; m != -1; m = inNext[m])
+	    for (int i = graph.getInStart(m); i < graph.getInEnd(m); i++)
+		if (!edgeRemoved[graph.getInEdge(i)])
+		    return graph.getInEdge(i);
+	throw new RuntimeException("no in-edge: " + v);
+    }
+
+    /**
+     * @return true if the residual graph contains an edge from s to t; O(outDegree(s))
+     */
+    private boolean containsEdge(int s, int t) {
+	for (int m = s; m != -1; m = outNext[m])
+	    for (int e = graph.getOutStart(m); e < graph.getOutEnd(m); e++)
+		if (!edgeRemoved[e] && edgeTarget[e] == t)
+		    return true;
+	return false;
+    }
+
+    /**
+     * removes vertex whose only predecessor is cover, connecting cover to all successors of vertex
+     */
+    private void contractIntoPredecessor(int vertex, int inEdge, int cover) {
+	unlink(vertex);
+	removeEdge(inEdge);
+	// mark successors of cover to avoid parallel edges
+	stamp++;
+	for (int m = cover; m != -1; m = outNext[m])
+	    for (int e = graph.getOutStart(m); e < graph.getOutEnd(m); e++)
+		if (!edgeRemoved[e])
+		    mark[edgeTarget[e]] = stamp;
+	// move out-edges of vertex to cover
+	for (int m = vertex; m != -1; m = outNext[m])
+	    for (int e = graph.getOutStart(m); e < graph.getOutEnd(m); e++)
+		if (!edgeRemoved[e]) {
+		    int succ = edgeTarget[e];
+		    if (mark[succ] == stamp)
+			removeEdge(e);
+		    else {
+			moveSource(e, cover);
+			// succ has a new predecessor, might make it reducible
+			if (inDegree[succ] == 1)
+			    enqueue(succ);
+		    }
+		}
+	log(OUT_CHAIN, cover, outLast[cover]);
+	outNext[outLast[cover]] = vertex;
+	outLast[cover] = outLast[vertex];
+	if (outDegree[cover] <= 1)
+	    enqueue(cover);
+    }
+
+    /**
+     * removes vertex whose only successor is cover, connecting all predecessors of vertex to cover
+     */
+    private void contractIntoSuccessor(int vertex, int outEdge, int cover) {
+	unlink(vertex);
+	removeEdge(outEdge);
+	// mark predecessors of cover to avoid parallel edges
+	stamp++;
+	for (int m = cover; m != -1; m = inNext[m])
+	    for (int i = graph.getInStart(m); i < graph.getInEnd(m); i++) {
+		int e = graph.getInEdge(i);
+		if (!edgeRemoved[e])
+		    mark[edgeSource[e]] = stamp;
+	    }
+	// move in-edges of vertex to cover
+	for (int m = vertex; m != -1; m = inNext[m])
+	    for (int i = graph.getInStart(m); i < graph.getInEnd(m); i++) {
+		int e = graph.getInEdge(i);
+		if (!edgeRemoved[e]) {
+		    int pre = edgeSource[e];
+		    if (mark[pre] == stamp)
+			removeEdge(e);
+		    else {
+			moveTarget(e, cover);
+			// pre has a new successor, might make it reducible
+			if (outDegree[pre] == 1)
+			    enqueue(pre);
+		    }
+		}
+	    }
+	log(IN_CHAIN, cover, inLast[cover]);
+	inNext[inLast[cover]] = vertex;
+	inLast[cover] = inLast[vertex];
+	if (inDegree[cover] <= 1)
+	    enqueue(cover);
+    }
+
+    /**
+     * checks if a vertex can be 1-reduced and does so if possible
+     * @return true if removed
+     */
+    private boolean reduce1(int vertex) {
+	int cover = -1, edge = -1;
+	boolean pre = false;
+	if (inDegree[vertex] == 1) {
+	    edge = firstInEdge(vertex);
+	    cover = edgeSource[edge];
+	    pre = true;
+	    // really a cover vertex?
+	    if (!smallerEqual(cover, vertex))
+		cover = -1;
+	}
+	// if we haven't found an incoming cover, look for outgoing one
+	if (cover == -1 && outDegree[vertex] == 1) {
+	    edge = firstOutEdge(vertex);
+	    cover = edgeTarget[edge];
+	    pre = false;
+	    if (!smallerEqual(cover, vertex))
+		cover = -1;
+	}
+	if (cover == -1)
+	    return false;
+
+	// anti-parallel edge which would create loop?
+	if (pre ? containsEdge(vertex, cover) : containsEdge(cover, vertex)) {
+	    addToFVS(cover);
+	    removeVertex(vertex);
+	    removeVertex(cover);
+	}
+	else if (pre)
+	    contractIntoPredecessor(vertex, edge, cover);
+	else
+	    contractIntoSuccessor(vertex, edge, cover);
+	return true;
+    }
+
+    /**
+     * reduces the residual graph by eliminating 0-vertices and 1-vertices
+     */
+    public void reduce() {
+	while (queueNr > 0) {
+	    int v = queue[--queueNr];
+	    queued[v] = false;
+	    log(POP, v, 0);
+	    if (removed[v])
+		continue;
+	    if (inDegree[v] == 0 || outDegree[v] == 0)
+		removeVertex(v);
+	    else
+		reduce1(v);
+	}
+    }
+
+    // ------------------------------------------------------------------ local search
+
+    /**
+     * performs local optimization: removes redundant vertices from the FVS, keeping the
+     * original graph without the FVS in topological order while they are put back
+     */
+    public void optimizeLocal() {
+	stamp++;
+	for (int i = 0; i < fvsNr; i++)
+	    if (inFVS[fvs[i]])
+		mark[fvs[i]] = stamp;
+	if (getRelinker().removeRedundant(fvs, fvsNr, inFVS) == 0)
+	    return;
+	for (int i = 0; i < fvsNr; i++)
+	    if (mark[fvs[i]] == stamp && !inFVS[fvs[i]])
+		log(DROP_FVS, fvs[i], 0);
+    }
+
+    // ------------------------------------------------------------------ path relinking
+
+    /**
+     * @return the number of IDs contained in only one of the solutions
+     */
+    public double distance(Object solution1, Object solution2) {
+	return ElitePool.symmetricDifference((Set)solution1, (Set)solution2);
+    }
+
+    /**
+     * @return the best FVS found on the path between both FVS, or null
+     */
+    public Object relink(Object from, Object to) {
+	return getRelinker().relink((Set)from, (Set)to);
+    }
+
+    private FVSPathRelinker getRelinker() {
+	if (relinker == null)
+	    relinker = new FVSPathRelinker(graph);
+	return relinker;
+    }
+
+    // ------------------------------------------------------------------ solutions
+
+    /**
+     * will only be called when getGreedyObjects() is empty
+     * @return a weight for the solution found; lower = better
+     */
+    public double getSolutionWeight() {
+	double weight = 0;
+	for (int i = 0; i < fvsNr; i++)
+	    if (inFVS[fvs[i]])
+		weight += graph.getWeight(fvs[i]);
+	return weight;
+    }
+
+    /**
+     * @return the weight of a given solution
+     * @param solution set of vertex IDs
+     */
+    public double getSolutionWeight(Object solution) {
+	// count each vertex only once, even if several of its IDs are given
+	boolean[] counted = new boolean[graph.getVertexNr()];
+	double weight = 0;
+	Iterator it = ((Set)solution).iterator();
+	while (it.hasNext()) {
+	    int v = graph.getIndexOfID(it.next());
+	    if (v >= 0 && !counted[v]) {
+		counted[v] = true;
+		weight += graph.getWeight(v);
+	    }
+	}
+	return weight;
+    }
+
+    /**
+     * @return the solution found, as set of vertex IDs
+     */
+    public Object getSolution() {
+	HashSet solution = new HashSet();
+	for (int i = 0; i < fvsNr; i++)
+	    if (inFVS[fvs[i]])
+		solution.addAll(graph.getIDs(fvs[i]));
+	return solution;
+    }
+
+    // ------------------------------------------------------------------ undo log
+
+    /**
+     * starts recording changes if not done yet
+     * @return the current position of the undo log
+     */
+    public int mark() {
+	if (trail == null)
+	    trail = new int[3 * 256];
+	return trailNr;
+    }
+
+    /**
+     * rewinds all changes recorded since mark was obtained
+     */
+    public void undo(int mark) {
+	while (trailNr > mark) {
+	    trailNr -= 3;
+	    int arg = trail[trailNr + 1];
+	    int old = trail[trailNr + 2];
+	    switch (trail[trailNr]) {
+	    case REMOVE_EDGE:
+		edgeRemoved[arg] = false;
+		outDegree[edgeSource[arg]]++;
+		inDegree[edgeTarget[arg]]++;
+		touch(edgeSource[arg]);
+		touch(edgeTarget[arg]);
+		break;
+	    case MOVE_SOURCE:
+		outDegree[edgeSource[arg]]--;
+		outDegree[old]++;
+		touch(edgeSource[arg]);
+		touch(old);
+		edgeSource[arg] = old;
+		break;
+	    case MOVE_TARGET:
+		inDegree[edgeTarget[arg]]--;
+		inDegree[old]++;
+		touch(edgeTarget[arg]);
+		touch(old);
+		edgeTarget[arg] = old;
+		break;
+	    case UNLINK:
+		removed[arg] = false;
+		livePos[arg] = liveNr;
+		live[liveNr++] = arg;
+		touch(arg);
+		break;
+	    case OUT_CHAIN:
+		outNext[old] = -1;
+		outLast[arg] = old;
+		break;
+	    case IN_CHAIN:
+		inNext[old] = -1;
+		inLast[arg] = old;
+		break;
+	    case ADD_FVS:
+		fvsNr--;
+		inFVS[arg] = false;
+		break;
+	    case DROP_FVS:
+		inFVS[arg] = true;
+		break;
+	    case PUSH:
+		queueNr--;
+		queued[arg] = false;
+		break;
+	    case POP:
+		queued[arg] = true;
+		queue[queueNr++] = arg;
+		break;
+	    default:
+		throw new RuntimeException("corrupt undo log");
+	    }
+	}
+    }
+
+    /**
+     * @return a deep-copy of itself; the CSRGraph is shared
+     */
+    public Object clone() {
+	CSRFVSProblem clone;
+	try {
+	    clone = (CSRFVSProblem)super.clone();
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    return null;
+	}
+	clone.removed = (boolean[])removed.clone();
+	clone.edgeRemoved = (boolean[])edgeRemoved.clone();
+	clone.edgeSource = (int[])edgeSource.clone();
+	clone.edgeTarget = (int[])edgeTarget.clone();
+	clone.inDegree = (int[])inDegree.clone();
+	clone.outDegree = (int[])outDegree.clone();
+	clone.outNext = (int[])outNext.clone();
+	clone.outLast = (int[])outLast.clone();
+	clone.inNext = (int[])inNext.clone();
+	clone.inLast = (int[])inLast.clone();
+	clone.live = (int[])live.clone();
+	clone.livePos = (int[])livePos.clone();
+	clone.fvs = (int[])fvs.clone();
+	clone.inFVS = (boolean[])inFVS.clone();
+	clone.queue = (int[])queue.clone();
+	clone.queued = (boolean[])queued.clone();
+	clone.mark = new int[mark.length];
+	clone.stamp = 0;
+	clone.relinker = null;
+	clone.createGreedyVertices();
+	clone.heap = (GreedyHeap)heap.clone();
+	clone.touched = (int[])touched.clone();
+	clone.isTouched = (boolean[])isTouched.clone();
+	// the clone starts without undo log
+	clone.trail = null;
+	clone.trailNr = 0;
+	return clone;
+    }
+
+}
@@ -0,0 +1,249 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+
+/**
+ * immutable int-indexed copy of a directed graph in compressed sparse row format
+ * vertices are numbered 0..n-1, edges 0..m-1 sorted by source and then by target;
+ * parallel edges are dropped, loops are kept
+ * the graph is never modified and may be shared between problem clones and threads
+ */
+public class CSRGraph {
+
+    private int vertexNr, edgeNr;
+    // out-edges of v are outStart[v] .. outStart[v+1]-1
+    private int[] outStart, source, target;
+    // in-edges of v are inEdge[inStart[v]] .. inEdge[inStart[v+1]-1]
+    private int[] inStart, inEdge;
+    private double[] weight;
+    // original vertices and their IDs
+    private Object[] vertices;
+    private Set[] ids;
+    private HashMap vertexIndex = new HashMap();
+    private HashMap idIndex = new HashMap();
+
+    /**
+     * copies g; weights and IDs are taken from FeedbackVertex objects,
+     * other vertices get weight 1 and are their own ID
+     */
+    public CSRGraph(DirectedGraph g) {
+	vertices = g.vertexSet().toArray();
+	vertexNr = vertices.length;
+	weight = new double[vertexNr];
+	ids = new Set[vertexNr];
+	for (int v = 0; v < vertexNr; v++) {
+	    if (vertices[v] instanceof FeedbackVertex) {
+		FeedbackVertex vertex = (FeedbackVertex)vertices[v];
+		weight[v] = vertex.getWeight();
+		ids[v] = Collections.unmodifiableSet(new HashSet(vertex.getID()));
+	    } else {
+		weight[v] = 1;
+		ids[v] = Collections.singleton(vertices[v]);
+	    }
+	    Integer index = new Integer(v);
+	    vertexIndex.put(vertices[v], index);
+	    Iterator it = ids[v].iterator();
+	    while (it.hasNext())
+		idIndex.put(it.next(), index);
+	}
+	// collect edges
+	Edge[] edges = (Edge[])g.edgeSet().toArray(new Edge[0]);
+	int[] edgeSource = new int[edges.length];
+	int[] edgeTarget = new int[edges.length];
+	for (int i = 0; i < edges.length; i++) {
+	    edgeSource[i] = getIndex(edges[i].getSource());
+	    edgeTarget[i] = getIndex(edges[i].getTarget());
+	}
+	build(edgeSource, edgeTarget);
+    }
+
+    /**
+     * creates a graph on the vertices 0..weight.length-1; the ID of vertex i is new Integer(i)
+     */
+    public CSRGraph(double[] weight, int[] edgeSource, int[] edgeTarget) {
+	vertexNr = weight.length;
+	this.weight = (double[])weight.clone();
+	vertices = new Object[vertexNr];
+	ids = new Set[vertexNr];
+	for (int v = 0; v < vertexNr; v++) {
+	    Integer index = new Integer(v);
+	    vertices[v] = index;
+	    ids[v] = Collections.singleton(index);
+	    vertexIndex.put(index, index);
+	    idIndex.put(index, index);
+	}
+	build(edgeSource, edgeTarget);
+    }
+
+    /**
+     * sets up forward and reverse adjacency via counting sort
+     */
+    private void build(int[] edgeSource, int[] edgeTarget) {
+	// forward adjacency
+	outStart = new int[vertexNr + 1];
+	for (int i = 0; i < edgeSource.length; i++)
+	    outStart[edgeSource[i] + 1]++;
+	for (int v = 0; v < vertexNr; v++)
+	    outStart[v + 1] += outStart[v];
+	int[] fill = new int[vertexNr];
+	System.arraycopy(outStart, 0, fill, 0, vertexNr);
+	int[] rawTarget = new int[edgeSource.length];
+	for (int i = 0; i < edgeSource.length; i++)
+	    rawTarget[fill[edgeSource[i]]++] = edgeTarget[i];
+	// sort rows and drop parallel edges
+	source = new int[edgeSource.length];
+	target = new int[edgeSource.length];
+	edgeNr = 0;
+	for (int v = 0; v < vertexNr; v++) {
+	    int start = outStart[v], end = outStart[v + 1];
+	    Arrays.sort(rawTarget, start, end);
+	    outStart[v] = edgeNr;
+	    for (int i = start; i < end; i++)
+		if (i == start || rawTarget[i] != rawTarget[i - 1]) {
+		    source[edgeNr] = v;
+		    target[edgeNr] = rawTarget[i];
+		    edgeNr++;
+		}
+	}
+	outStart[vertexNr] = edgeNr;
+	if (edgeNr < source.length) {
+	    int[] shrunk = new int[edgeNr];
+	    System.arraycopy(source, 0, shrunk, 0, edgeNr);
+	    source = shrunk;
+	    shrunk = new int[edgeNr];
+	    System.arraycopy(target, 0, shrunk, 0, edgeNr);
+	    target = shrunk;
+	}
+	// reverse adjacency, rows end up sorted by source
+	inStart = new int[vertexNr + 1];
+	for (int e = 0; e < edgeNr; e++)
+	    inStart[target[e] + 1]++;
+	for (int v = 0; v < vertexNr; v++)
+	    inStart[v + 1] += inStart[v];
+	System.arraycopy(inStart, 0, fill, 0, vertexNr);
+	inEdge = new int[edgeNr];
+	for (int e = 0; e < edgeNr; e++)
+	    inEdge[fill[target[e]]++] = e;
+    }
+
+    public int getVertexNr() {
+	return vertexNr;
+    }
+
+    public int getEdgeNr() {
+	return edgeNr;
+    }
+
+    /**
+     * @return the first out-edge of v
+     */
+    public int getOutStart(int v) {
+	return outStart[v];
+    }
+
+    /**
+     * @return the last out-edge of v + 1
+     */
+    public int getOutEnd(int v) {
+	return outStart[v + 1];
+    }
+
+    /**
+     * @return the first position of v in the in-edge array
+     */
+    public int getInStart(int v) {
+	return inStart[v];
+    }
+
+    /**
+     * @return the last position of v in the in-edge array + 1
+     */
+    public int getInEnd(int v) {
+	return inStart[v + 1];
+    }
+
+    /**
+     * @param i position in the in-edge array, as given by getInStart/getInEnd
+     * @return the edge at position i
+     */
+    public int getInEdge(int i) {
+	return inEdge[i];
+    }
+
+    public int getSource(int e) {
+	return source[e];
+    }
+
+    public int getTarget(int e) {
+	return target[e];
+    }
+
+    public int outDegreeOf(int v) {
+	return outStart[v + 1] - outStart[v];
+    }
+
+    public int inDegreeOf(int v) {
+	return inStart[v + 1] - inStart[v];
+    }
+
+    /**
+     * @return the edge from s to t, or -1 if there is none
+     */
+    public int getEdge(int s, int t) {
+	int low = outStart[s], high = outStart[s + 1] - 1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    if (target[mid] < t)
+		low = mid + 1;
+	    else if (target[mid] > t)
+		high = mid - 1;
+	    else
+		return mid;
+	}
+	return -1;
+    }
+
+    public double getWeight(int v) {
+	return weight[v];
+    }
+
+    /**
+     * @return the vertex object v was created from
+     */
+    public Object getVertex(int v) {
+	return vertices[v];
+    }
+
+    /**
+     * @return the index of vertex, or -1 if it is not in the graph
+     */
+    public int getIndex(Object vertex) {
+	Integer index = (Integer)vertexIndex.get(vertex);
+	return index == null ? -1 : index.intValue();
+    }
+
+    /**
+     * @return the (unmodifiable) ID set of v
+     */
+    public Set getIDs(int v) {
+	return ids[v];
+    }
+
+    /**
+     * @return the index of the vertex with the given ID, or -1 if there is none
+     */
+    public int getIndexOfID(Object id) {
+	Integer index = (Integer)idIndex.get(id);
+	return index == null ? -1 : index.intValue();
+    }
+
+    public String toString() {
+	StringBuffer out = new StringBuffer("CSRGraph(" + vertexNr + ", " + edgeNr + "): {");
+	for (int e = 0; e < edgeNr; e++)
+	    out.append(" " + source[e] + "->" + target[e]);
+	return out.append(" }").toString();
+    }
+
+}
@@ -0,0 +1,182 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * canonical form of a weighted directed graph, to be used as hash key
+ * vertices are labelled by colour refinement: starting from their weights and degrees, colours
+ * are refined by the colours of the neighbours until the number of colours stays the same;
+ * the vertices are then labelled by colour, ties being broken by index
+ * equal forms mean that the graphs are isomorphic, the labels giving the isomorphism;
+ * isomorphic graphs with ties left after refinement may get different forms, which can only
+ * cause a cache miss, never a wrong hit
+ */
+public class CanonicalGraph {
+
+    // vertex number, edge number, vertex weights by label, then source, target and weight of the
+    // edges, sorted
+    private long[] form;
+    private int hash;
+    // label of each vertex and vertex of each label
+    private int[] label, vertex;
+    // position of each edge in the form and edge at each position
+    private int[] position, edge;
+
+    /**
+     * @param vertexWeight weight of each vertex, vertices being 0..vertexWeight.length-1
+     * @param source source vertex of each edge
+     * @param target target vertex of each edge
+     * @param edgeWeight weight of each edge, null if edges are unweighted
+     */
+    public CanonicalGraph(double[] vertexWeight, int[] source, int[] target, double[] edgeWeight) {
+	int n = vertexWeight.length, m = source.length;
+	long[] edgeBits = new long[m];
+	if (edgeWeight != null)
+	    for (int e = 0; e < m; e++)
+		edgeBits[e] = Double.doubleToLongBits(edgeWeight[e]);
+	int[] color = refine(vertexWeight, source, target, edgeBits);
+	// label by colour, then index
+	long[] order = new long[n];
+	for (int v = 0; v < n; v++)
+	    order[v] = (long)color[v] << 32 | v;
+	Arrays.sort(order);
+	label = new int[n];
+	vertex = new int[n];
+	for (int i = 0; i < n; i++) {
+	    vertex[i] = (int)order[i];
+	    label[vertex[i]] = i;
+	}
+	// sort edges by labels and weight
+	final long[] key = new long[m];
+	final long[] bits = edgeBits;
+	Integer[] sorted = new Integer[m];
+	for (int e = 0; e < m; e++) {
+	    key[e] = (long)label[source[e]] << 32 | label[target[e]];
+	    sorted[e] = new Integer(e);
+	}
+	Arrays.sort(sorted, new Comparator() {
+		public int compare(Object o1, Object o2) {
+		    int e1 = ((Integer)o1).intValue(), e2 = ((Integer)o2).intValue();
+		    if (key[e1] != key[e2])
+			return key[e1] < key[e2] ? -1 : 1;
+		    return bits[e1] < bits[e2] ? -1 : bits[e1] == bits[e2] ? 0 : 1;
+		}
+	    });
+	form = new long[2 + n + 2 * m];
+	form[0] = n;
+	form[1] = m;
+	for (int i = 0; i < n; i++)
+	    form[2 + i] = Double.doubleToLongBits(vertexWeight[vertex[i]]);
+	position = new int[m];
+	edge = new int[m];
+	for (int i = 0; i < m; i++) {
+	    edge[i] = sorted[i].intValue();
+	    position[edge[i]] = i;
+	    form[2 + n + 2 * i] = key[edge[i]];
+	    form[3 + n + 2 * i] = edgeBits[edge[i]];
+	}
+	hash = Arrays.hashCode(form);
+    }
+
+    /**
+     * @return the colour of each vertex, colours being 0.. and depending only on the structure
+     */
+    private static int[] refine(double[] vertexWeight, int[] source, int[] target, long[] edgeBits) {
+	int n = vertexWeight.length, m = source.length;
+	long[] signature = new long[n];
+	for (int e = 0; e < m; e++) {
+	    signature[source[e]] += 0x9E3779B97F4A7C15L;
+	    signature[target[e]] += 0xC2B2AE3D27D4EB4FL;
+	}
+	for (int v = 0; v < n; v++)
+	    signature[v] = mix(signature[v] ^ mix(Double.doubleToLongBits(vertexWeight[v])));
+	int[] color = new int[n];
+	int colorNr = rank(signature, color);
+	for (int round = 0; round < n; round++) {
+	    for (int v = 0; v < n; v++)
+		signature[v] = mix(color[v]);
+	    // sums do not depend on the order of the edges
+	    for (int e = 0; e < m; e++) {
+		signature[source[e]] += mix(color[target[e]] * 0x9E3779B97F4A7C15L ^ edgeBits[e]);
+		signature[target[e]] += mix(color[source[e]] * 0xC2B2AE3D27D4EB4FL ^ edgeBits[e] ^ 1);
+	    }
+	    int newColorNr = rank(signature, color);
+	    if (newColorNr == colorNr)
+		break;
+	    colorNr = newColorNr;
+	}
+	return color;
+    }
+
+    /**
+     * sets color[v] to the rank of signature[v] among the distinct signatures
+     * @return the number of distinct signatures
+     */
+    private static int rank(long[] signature, int[] color) {
+	long[] sorted = (long[])signature.clone();
+	Arrays.sort(sorted);
+	int distinct = 0;
+	for (int i = 0; i < sorted.length; i++)
+	    if (i == 0 || sorted[i] != sorted[i - 1])
+		sorted[distinct++] = sorted[i];
+	for (int v = 0; v < signature.length; v++)
+	    color[v] = Arrays.binarySearch(sorted, 0, distinct, signature[v]);
+	return distinct;
+    }
+
+    /**
+     * finalizer of SplitMix64
+     */
+    static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the label of vertex v
+     */
+    public int getLabel(int v) {
+	return label[v];
+    }
+
+    /**
+     * @return the vertex with the given label
+     */
+    public int getVertex(int label) {
+	return vertex[label];
+    }
+
+    /**
+     * @return the position of edge e in the sorted edge list
+     */
+    public int getPosition(int e) {
+	return position[e];
+    }
+
+    /**
+     * @return the edge at the given position of the sorted edge list
+     */
+    public int getEdge(int position) {
+	return edge[position];
+    }
+
+    /**
+     * @return the number of array elements held, as a measure of memory
+     */
+    public int size() {
+	return form.length + label.length + vertex.length + position.length + edge.length;
+    }
+
+    public boolean equals(Object obj) {
+	if (!(obj instanceof CanonicalGraph))
+	    return false;
+	CanonicalGraph other = (CanonicalGraph)obj;
+	return hash == other.hash && Arrays.equals(form, other.form);
+    }
+
+    public int hashCode() {
+	return hash;
+    }
+
+}
@@ -0,0 +1,227 @@
+package feedback;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.graph.*;
+
+import grasp.*;
+
+/**
+ * solves feedback set problems component by component: the graph is split into its strongly
+ * connected components, the acyclic ones are dropped and the cyclic ones are solved independently;
+ * the union of their solutions is a solution for the whole graph
+ * components are handed out largest first to a number of worker threads, each taking the next
+ * one when done; every component draws from its own random stream, so the result does not
+ * depend on which thread solves it
+ */
+public class ComponentSolver {
+
+    private int threads;
+    // caches FVS of reduced components, null disables caching
+    private SolutionCache solutionCache = null;
+
+    public ComponentSolver(int threads) {
+	if (threads < 1)
+	    throw new IllegalArgumentException("threads = " + threads);
+	this.threads = threads;
+    }
+
+    /**
+     * @param solutionCache caches the FVS of reduced components, so components seen before
+     * are not solved again; null disables caching; FES are cached by their FeedbackSets
+     */
+    public void setSolutionCache(SolutionCache solutionCache) {
+	this.solutionCache = solutionCache;
+    }
+
+    /**
+     * solves a single component
+     */
+    private interface ComponentTask {
+	/**
+	 * @return the solution of component c
+	 */
+	public Set solve(int c, long seed);
+    }
+
+    /**
+     * takes components from next until none are left
+     */
+    private static class Worker extends Thread {
+
+	private ComponentTask task;
+	private Set[] solutions;
+	private AtomicInteger next;
+	private long seed;
+	private Throwable failure = null;
+
+	public Worker(ComponentTask task, Set[] solutions, AtomicInteger next, long seed) {
+	    this.task = task;
+	    this.solutions = solutions;
+	    this.next = next;
+	    this.seed = seed;
+	}
+
+	public void run() {
+	    try {
+		int c;
+		while ((c = next.getAndIncrement()) < solutions.length)
+		    solutions[c] = task.solve(c, GRASPSolver.streamSeed(seed, c));
+	    } catch (Throwable e) {
+		failure = e;
+	    }
+	}
+
+	public Throwable getFailure() {
+	    return failure;
+	}
+    }
+
+    /**
+     * solves components 0..componentNr-1 and merges their solutions
+     */
+    private Set solveAll(int componentNr, ComponentTask task, long seed) {
+	Set[] solutions = new Set[componentNr];
+	AtomicInteger next = new AtomicInteger();
+	int workerNr = Math.max(1, Math.min(threads, componentNr));
+	Worker[] workers = new Worker[workerNr];
+	for (int w = 0; w < workerNr; w++)
+	    workers[w] = new Worker(task, solutions, next, seed);
+	if (workerNr == 1)
+	    workers[0].run();
+	else {
+	    for (int w = 0; w < workerNr; w++)
+		workers[w].start();
+	    for (int w = 0; w < workerNr; w++)
+		try {
+		    workers[w].join();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new RuntimeException("interrupted while waiting for component workers");
+		}
+	}
+	for (int w = 0; w < workerNr; w++)
+	    if (workers[w].getFailure() != null)
+		GRASPSolver.rethrow(workers[w].getFailure());
+	Set result = new HashSet();
+	for (int c = 0; c < componentNr; c++)
+	    if (solutions[c] != null)
+		result.addAll(solutions[c]);
+	return result;
+    }
+
+    /**
+     * @return the vertices of the cyclic strongly connected components of g, largest first
+     */
+    public static Object[][] findCyclicComponents(DirectedGraph g) {
+	CSRGraph graph = new CSRGraph(g);
+	StronglyConnectedComponents scc = new StronglyConnectedComponents(graph);
+	int[] cyclic = scc.getCyclicComponents();
+	Object[][] components = new Object[cyclic.length][];
+	for (int i = 0; i < cyclic.length; i++) {
+	    components[i] = new Object[scc.getSize(cyclic[i])];
+	    for (int j = 0; j < components[i].length; j++)
+		components[i][j] = graph.getVertex(scc.getVertex(cyclic[i], j));
+	}
+	return components;
+    }
+
+    /**
+     * finds a FVS for g with GRASP, solving each cyclic component on its own
+     * @param g is not modified
+     * @param iterations GRASP iterations per component
+     * @param seed seed from which the random streams of the components are derived
+     * @return the IDs of the FVS
+     */
+    public Set findFeedbackVertexSet(FeedbackVertexGraph g, final int iterations, long seed) {
+	Object[][] components = findCyclicComponents(g);
+	// build the subgraphs on the calling thread, so workers never touch g
+	final FeedbackVertexGraph[] subgraphs = new FeedbackVertexGraph[components.length];
+	for (int c = 0; c < components.length; c++)
+	    subgraphs[c] = createSubgraph(g, components[c]);
+	return solveAll(components.length, new ComponentTask() {
+		public Set solve(int c, long componentSeed) {
+		    GRASPProblem problem = createProblem(subgraphs[c]);
+		    subgraphs[c] = null;
+		    return (Set)createSolver().solve(problem, iterations, 1, componentSeed);
+		}
+	    }, seed);
+    }
+
+    /**
+     * finds a FES for g with GRASP, solving each cyclic component on its own
+     * @param g can be weighted but must be loop-free, if weighted all weights must be > 0
+     * @param solver gives the settings for the components, each of which is solved by its own
+     * copy, see createSolver; not modified
+     * @param seed seed from which the random streams of the components are derived
+     * @return the edges of the FES
+     */
+    public Set findFeedbackEdgeSet(DirectedGraph g, final FeedbackSets solver, long seed) {
+	Object[][] components = findCyclicComponents(g);
+	final DirectedGraph[] subgraphs = new DirectedGraph[components.length];
+	for (int c = 0; c < components.length; c++)
+	    subgraphs[c] = createSubgraph(g, components[c]);
+	return solveAll(components.length, new ComponentTask() {
+		public Set solve(int c, long componentSeed) {
+		    DirectedGraph subgraph = subgraphs[c];
+		    subgraphs[c] = null;
+		    return createSolver(solver).findGreedyFeedbackEdgeSet(subgraph, 1, componentSeed);
+		}
+	    }, seed);
+    }
+
+    /**
+     * @return the subgraph of g induced by vertices, on copies of the vertices
+     */
+    protected FeedbackVertexGraph createSubgraph(FeedbackVertexGraph g, Object[] vertices) {
+	return g.createSubgraph(vertices);
+    }
+
+    /**
+     * @return the subgraph of g induced by vertices, sharing vertices and edges with g
+     */
+    protected DirectedGraph createSubgraph(DirectedGraph g, Object[] vertices) {
+	DirectedMultigraph subgraph = new DirectedMultigraph();
+	for (int i = 0; i < vertices.length; i++)
+	    subgraph.addVertex(vertices[i]);
+	for (int i = 0; i < vertices.length; i++) {
+	    Iterator it = g.outgoingEdgesOf(vertices[i]).iterator();
+	    while (it.hasNext()) {
+		Edge edge = (Edge)it.next();
+		if (subgraph.containsVertex(edge.getTarget()))
+		    subgraph.addEdge(edge);
+	    }
+	}
+	return subgraph;
+    }
+
+    /**
+     * @return the problem solved for a component of a FVS
+     */
+    protected GRASPProblem createProblem(FeedbackVertexGraph subgraph) {
+	FVSProblem problem = new FVSProblem(subgraph);
+	problem.setSolutionCache(solutionCache);
+	// reduce once for better performance
+	problem.reduce();
+	return problem;
+    }
+
+    /**
+     * @return the solver used for a single component of a FVS; called once per component,
+     * as a GRASPSolver must not be shared between threads
+     */
+    protected GRASPSolver createSolver() {
+	return new GRASPSolver();
+    }
+
+    /**
+     * @return the solver used for a single component of a FES; called once per component, so
+     * components neither share nor depend on the statistics of a reactive rcl constructor
+     */
+    protected FeedbackSets createSolver(FeedbackSets solver) {
+	return solver.copy();
+    }
+
+}
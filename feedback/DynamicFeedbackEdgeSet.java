@@ -0,0 +1,137 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.graph.*;
+import org._3pq.jgrapht.edge.*;
+
+/**
+ * FES of a changing graph: an inserted edge closing a cycle in the residual graph makes the
+ * cheapest edge of that cycle join the FES, the new edge being preferred among equally cheap ones;
+ * loops always belong to the FES
+ * edge weights must be > 0 once reoptimization is used
+ */
+public class DynamicFeedbackEdgeSet extends DynamicFeedbackSet {
+
+    private FeedbackSets solver;
+
+    /**
+     * edge of a snapshot, knowing its index
+     */
+    private static class SnapshotEdge extends DirectedWeightedEdge {
+
+	public final int index;
+
+	public SnapshotEdge(Object source, Object target, double weight, int index) {
+	    super(source, target, weight);
+	    this.index = index;
+	}
+    }
+
+    public DynamicFeedbackEdgeSet() {
+	this(new FeedbackSets());
+    }
+
+    /**
+     * @param solver reoptimizes snapshots in the background
+     */
+    public DynamicFeedbackEdgeSet(FeedbackSets solver) {
+	this.solver = solver;
+    }
+
+    protected boolean countsEdge(int e) {
+	return true;
+    }
+
+    protected void insertEdge(int e) {
+	if (source[e] == target[e]) {
+	    weight += edgeWeight[e];
+	    return;
+	}
+	while (true) {
+	    int pathLength = addToOrder(e);
+	    if (pathLength < 0)
+		return;
+	    int cheapest = e;
+	    for (int i = 0; i < pathLength; i++) {
+		int f = getPathEdge(i);
+		if (edgeWeight[f] < edgeWeight[cheapest])
+		    cheapest = f;
+	    }
+	    weight += edgeWeight[cheapest];
+	    if (cheapest == e)
+		return;
+	    residual[cheapest] = false;
+	}
+    }
+
+    /**
+     * puts back those FES edges at v that no longer close a cycle
+     */
+    protected void repair(int v) {
+	for (int i = 0; i < getOutDegree(v); i++)
+	    putBack(getOutEdge(v, i));
+	for (int i = 0; i < getInDegree(v); i++)
+	    putBack(getInEdge(v, i));
+    }
+
+    private void putBack(int e) {
+	if (!residual[e] && source[e] != target[e] && addToOrder(e) < 0)
+	    weight -= edgeWeight[e];
+    }
+
+    /**
+     * @return the edges of the FES
+     */
+    public Set getFeedbackSet() {
+	Set fes = new HashSet();
+	for (int e = 0; e < getEdgeNr(); e++)
+	    if (edgeAlive[e] && !residual[e])
+		fes.add(edges[e]);
+	return fes;
+    }
+
+    protected double computeWeight() {
+	double weight = 0;
+	for (int e = 0; e < getEdgeNr(); e++)
+	    if (edgeAlive[e] && !residual[e])
+		weight += edgeWeight[e];
+	return weight;
+    }
+
+    /**
+     * @return a multigraph on vertex indices, without loops
+     */
+    protected Object createSnapshot() {
+	DirectedMultigraph snapshot = new DirectedMultigraph();
+	Integer[] vertexObjects = new Integer[getVertexNr()];
+	for (int v = 0; v < vertexObjects.length; v++)
+	    if (vertexAlive[v]) {
+		vertexObjects[v] = new Integer(v);
+		snapshot.addVertex(vertexObjects[v]);
+	    }
+	for (int e = 0; e < getEdgeNr(); e++)
+	    if (edgeAlive[e] && source[e] != target[e])
+		snapshot.addEdge(new SnapshotEdge(vertexObjects[source[e]], vertexObjects[target[e]],
+						  edgeWeight[e], e));
+	return snapshot;
+    }
+
+    protected int[] solveSnapshot(Object snapshot, long seed) {
+	Set fes = new ComponentSolver(1).findFeedbackEdgeSet((DirectedGraph)snapshot, solver, seed);
+	int[] result = new int[fes.size()];
+	int i = 0;
+	Iterator it = fes.iterator();
+	while (it.hasNext())
+	    result[i++] = ((SnapshotEdge)it.next()).index;
+	return result;
+    }
+
+    protected void applySolution(boolean[] inSolution, int snapshotTime) {
+	for (int e = 0; e < getEdgeNr(); e++)
+	    if (edgeAlive[e] && getEdgeTime(e) <= snapshotTime)
+		residual[e] = !inSolution[e] && source[e] != target[e];
+    }
+
+}
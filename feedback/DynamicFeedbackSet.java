@@ -0,0 +1,698 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+import org._3pq.jgrapht.edge.*;
+
+import grasp.*;
+
+/**
+ * keeps a feedback set of a graph that changes vertex by vertex and edge by edge
+ * the graph without the feedback set, the residual graph, stays acyclic; its topological order is
+ * maintained as done by Pearce and Kelly, so an inserted edge only searches the vertices whose
+ * positions lie between its endpoints; if it closes a cycle, the cheapest element of that cycle
+ * joins the feedback set; after a removal, feedback elements next to it are tried to be put back
+ * every reoptimizeInterval changes a background thread solves a snapshot of the graph, and its
+ * feedback set is adopted with a later change if it is better, taking the changes since into account
+ * not thread-safe; the background thread only works on its snapshot
+ */
+public abstract class DynamicFeedbackSet {
+
+    // vertices by index; indices of removed vertices and edges get reused
+    private HashMap vertexIndex = new HashMap();
+    protected Object[] vertices = new Object[0];
+    protected double[] vertexWeight = new double[0];
+    protected boolean[] vertexAlive = new boolean[0];
+    // vertices not in the residual graph form a FVS
+    protected boolean[] vertexResidual = new boolean[0];
+    private int[] vertexTime = new int[0];
+    private int vertexNr = 0;
+    private int[] freeVertices = new int[0];
+    private int freeVertexNr = 0;
+    // all edges by index
+    private HashMap edgeIndex = new HashMap();
+    protected Edge[] edges = new Edge[0];
+    protected int[] source = new int[0], target = new int[0];
+    protected double[] edgeWeight = new double[0];
+    protected boolean[] edgeAlive = new boolean[0];
+    // edges in the residual graph
+    protected boolean[] residual = new boolean[0];
+    private int[] edgeTime = new int[0];
+    private int edgeNr = 0;
+    private int[] freeEdges = new int[0];
+    private int freeEdgeNr = 0;
+    // indices of all edges at each vertex
+    private int[][] outEdges = new int[0][], inEdges = new int[0][];
+    private int[] outNr = new int[0], inNr = new int[0];
+    // topological order of the residual graph: distinct positions, with gaps
+    private int[] ord = new int[0];
+    private int nextPosition = 0;
+    // scratch space of the searches
+    private int[] mark = new int[0], stack = new int[0], parentEdge = new int[0];
+    private int[] forward = new int[0], backward = new int[0];
+    private int forwardNr, backwardNr, stamp = 0;
+    // weight of the feedback set
+    protected double weight = 0;
+    // number of changes, stamps vertices and edges with the time of their insertion
+    private int time = 0;
+    // background reoptimization, 0 disables
+    private int reoptimizeInterval = 0;
+    private Random rand = new Random();
+    private Thread reoptimizer = null;
+    private int[] reoptimized = null;
+    private int reoptimizedTime;
+    // time at which the last snapshot was taken
+    private int snapshotTime = 0;
+    private Throwable reoptimizeFailure = null;
+
+    /**
+     * @param interval number of changes after which a snapshot is reoptimized in the background,
+     * 0 disables reoptimization
+     */
+    public void setReoptimizeInterval(int interval) {
+	if (interval < 0)
+	    throw new IllegalArgumentException("interval = " + interval);
+	reoptimizeInterval = interval;
+    }
+
+    /**
+     * @return the weight of a vertex; FeedbackVertex objects give their weight, with infinity
+     * meaning they must not be removed, other vertices weigh 1
+     */
+    protected double getVertexWeight(Object vertex) {
+	if (!(vertex instanceof FeedbackVertex))
+	    return 1;
+	double weight = ((FeedbackVertex)vertex).getWeight();
+	return weight == FeedbackVertex.infinity ? Double.POSITIVE_INFINITY : weight;
+    }
+
+    /**
+     * @return the weight of a DirectedWeightedEdge, 1 for other edges
+     */
+    protected double getEdgeWeight(Edge edge) {
+	if (edge instanceof DirectedWeightedEdge)
+	    return ((DirectedWeightedEdge)edge).getWeight();
+	return 1;
+    }
+
+    public boolean containsVertex(Object vertex) {
+	return vertexIndex.containsKey(vertex);
+    }
+
+    public boolean containsEdge(Edge edge) {
+	return edgeIndex.containsKey(edge);
+    }
+
+    /**
+     * adds vertex without edges
+     * @return false if it is already contained
+     */
+    public boolean addVertex(Object vertex) {
+	if (vertexIndex.containsKey(vertex))
+	    return false;
+	int v = freeVertexNr > 0 ? freeVertices[--freeVertexNr] : newVertex();
+	vertexIndex.put(vertex, new Integer(v));
+	vertices[v] = vertex;
+	vertexWeight[v] = getVertexWeight(vertex);
+	vertexAlive[v] = true;
+	vertexResidual[v] = true;
+	vertexTime[v] = ++time;
+	outNr[v] = inNr[v] = 0;
+	if (nextPosition == Integer.MAX_VALUE)
+	    renumber();
+	ord[v] = nextPosition++;
+	changed();
+	return true;
+    }
+
+    /**
+     * removes vertex and its edges
+     * @return false if it is not contained
+     */
+    public boolean removeVertex(Object vertex) {
+	Integer index = (Integer)vertexIndex.remove(vertex);
+	if (index == null)
+	    return false;
+	int v = index.intValue();
+	time++;
+	// neighbours might get elements back
+	int[] neighbours = new int[outNr[v] + inNr[v]];
+	int neighbourNr = 0;
+	while (outNr[v] > 0) {
+	    int e = outEdges[v][outNr[v] - 1];
+	    if (target[e] != v)
+		neighbours[neighbourNr++] = target[e];
+	    deleteEdge(e);
+	}
+	while (inNr[v] > 0) {
+	    int e = inEdges[v][inNr[v] - 1];
+	    neighbours[neighbourNr++] = source[e];
+	    deleteEdge(e);
+	}
+	if (!vertexResidual[v])
+	    weight -= vertexWeight[v];
+	vertexAlive[v] = false;
+	vertices[v] = null;
+	freeVertices = grow(freeVertices, freeVertexNr + 1);
+	freeVertices[freeVertexNr++] = v;
+	for (int i = 0; i < neighbourNr; i++)
+	    if (vertexAlive[neighbours[i]])
+		repair(neighbours[i]);
+	changed();
+	return true;
+    }
+
+    /**
+     * adds edge, whose endpoints must be contained already
+     * @return false if it is already contained
+     * @throws IllegalArgumentException if it closes a cycle without removable element
+     */
+    public boolean addEdge(Edge edge) {
+	if (edgeIndex.containsKey(edge))
+	    return false;
+	Integer s = (Integer)vertexIndex.get(edge.getSource());
+	Integer t = (Integer)vertexIndex.get(edge.getTarget());
+	if (s == null || t == null)
+	    throw new IllegalArgumentException("no such vertex: " + (s == null ? edge.getSource() : edge.getTarget()));
+	int e = freeEdgeNr > 0 ? freeEdges[--freeEdgeNr] : newEdge();
+	edgeIndex.put(edge, new Integer(e));
+	edges[e] = edge;
+	source[e] = s.intValue();
+	target[e] = t.intValue();
+	edgeWeight[e] = getEdgeWeight(edge);
+	edgeAlive[e] = true;
+	residual[e] = false;
+	edgeTime[e] = ++time;
+	outEdges[source[e]] = grow(outEdges[source[e]], outNr[source[e]] + 1);
+	outEdges[source[e]][outNr[source[e]]++] = e;
+	inEdges[target[e]] = grow(inEdges[target[e]], inNr[target[e]] + 1);
+	inEdges[target[e]][inNr[target[e]]++] = e;
+	try {
+	    insertEdge(e);
+	} catch (IllegalArgumentException ex) {
+	    edgeIndex.remove(edge);
+	    deleteEdge(e);
+	    throw ex;
+	}
+	changed();
+	return true;
+    }
+
+    /**
+     * @return false if edge is not contained
+     */
+    public boolean removeEdge(Edge edge) {
+	Integer index = (Integer)edgeIndex.remove(edge);
+	if (index == null)
+	    return false;
+	int e = index.intValue();
+	time++;
+	int s = source[e], t = target[e];
+	deleteEdge(e);
+	repair(s);
+	if (t != s)
+	    repair(t);
+	changed();
+	return true;
+    }
+
+    /**
+     * removes e from all structures; the order stays valid
+     */
+    private void deleteEdge(int e) {
+	if (!residual[e] && countsEdge(e))
+	    weight -= edgeWeight[e];
+	edgeIndex.remove(edges[e]);
+	removeFrom(outEdges[source[e]], outNr, source[e], e);
+	removeFrom(inEdges[target[e]], inNr, target[e], e);
+	edgeAlive[e] = false;
+	residual[e] = false;
+	edges[e] = null;
+	freeEdges = grow(freeEdges, freeEdgeNr + 1);
+	freeEdges[freeEdgeNr++] = e;
+    }
+
+    private static void removeFrom(int[] list, int[] nr, int v, int e) {
+	for (int i = nr[v] - 1; i >= 0; i--)
+	    if (list[i] == e) {
+		list[i] = list[--nr[v]];
+		return;
+	    }
+    }
+
+    /**
+     * @return true if e counts towards the weight while outside the residual graph
+     */
+    protected abstract boolean countsEdge(int e);
+
+    /**
+     * puts the new edge e into the residual graph, or makes some element join the feedback set
+     */
+    protected abstract void insertEdge(int e);
+
+    /**
+     * tries to put feedback elements at or next to v back into the residual graph
+     */
+    protected abstract void repair(int v);
+
+    /**
+     * @return the feedback set of the current graph
+     */
+    public abstract Set getFeedbackSet();
+
+    /**
+     * @return the weight of the feedback set
+     */
+    public double getWeight() {
+	return weight;
+    }
+
+    /**
+     * adds e to the residual graph, reordering vertices if needed; both endpoints must be residual
+     * @return -1 if added, otherwise the number of edges on a path from target to source of e,
+     * which are then found in getPathEdge
+     */
+    protected int addToOrder(int e) {
+	int s = source[e], t = target[e];
+	if (s == t)
+	    return 0;
+	if (ord[s] < ord[t]) {
+	    residual[e] = true;
+	    return -1;
+	}
+	stamp += 2;
+	// vertices reachable from t that lie before s
+	int pathLength = searchForward(t, s, ord[s]);
+	if (pathLength >= 0)
+	    return pathLength;
+	// vertices reaching s that lie after t
+	searchBackward(s, ord[t]);
+	reorder();
+	residual[e] = true;
+	return -1;
+    }
+
+    /**
+     * @return the i-th edge of the path found by the last unsuccessful addToOrder
+     */
+    protected int getPathEdge(int i) {
+	return stack[i];
+    }
+
+    /**
+     * @return the length of a path from start to target, with its edges at the bottom of the stack,
+     * or -1 if target is not reachable; the vertices reached before ub are then in forward
+     */
+    private int searchForward(int start, int target, int ub) {
+	forwardNr = 0;
+	mark[start] = stamp;
+	forward[forwardNr++] = start;
+	// depth first, the stack holding the next edge index of each vertex on the path
+	int depth = 0;
+	stack[0] = 0;
+	int[] path = parentEdge;
+	int v = start;
+	while (true) {
+	    if (stack[depth] < outNr[v]) {
+		int e = outEdges[v][stack[depth]++];
+		if (!residual[e])
+		    continue;
+		int w = this.target[e];
+		if (w == target) {
+		    path[depth] = e;
+		    // move the path to the stack
+		    for (int i = 0; i <= depth; i++)
+			stack[i] = path[i];
+		    return depth + 1;
+		}
+		if (mark[w] == stamp || ord[w] >= ub)
+		    continue;
+		mark[w] = stamp;
+		forward[forwardNr++] = w;
+		path[depth++] = e;
+		stack[depth] = 0;
+		v = w;
+	    } else {
+		if (depth == 0)
+		    return -1;
+		v = source[path[--depth]];
+	    }
+	}
+    }
+
+    /**
+     * collects the vertices reaching start with position > lb into backward
+     */
+    private void searchBackward(int start, int lb) {
+	backwardNr = 0;
+	mark[start] = stamp + 1;
+	int top = 0;
+	stack[top++] = start;
+	while (top > 0) {
+	    int v = stack[--top];
+	    backward[backwardNr++] = v;
+	    for (int i = 0; i < inNr[v]; i++) {
+		int e = inEdges[v][i];
+		if (!residual[e])
+		    continue;
+		int pre = source[e];
+		if (mark[pre] != stamp + 1 && ord[pre] > lb) {
+		    mark[pre] = stamp + 1;
+		    stack[top++] = pre;
+		}
+	    }
+	}
+    }
+
+    /**
+     * moves the backward vertices in front of the forward vertices, using the positions of both
+     */
+    private void reorder() {
+	// sort both sets by position, keeping the vertex in the lower bits
+	long[] f = new long[forwardNr], b = new long[backwardNr];
+	for (int i = 0; i < forwardNr; i++)
+	    f[i] = (long)ord[forward[i]] << 32 | forward[i];
+	for (int i = 0; i < backwardNr; i++)
+	    b[i] = (long)ord[backward[i]] << 32 | backward[i];
+	Arrays.sort(f);
+	Arrays.sort(b);
+	int[] positions = new int[forwardNr + backwardNr];
+	int i = 0, j = 0, p = 0;
+	while (i < forwardNr || j < backwardNr)
+	    if (j == backwardNr || i < forwardNr && f[i] < b[j])
+		positions[p++] = (int)(f[i++] >>> 32);
+	    else
+		positions[p++] = (int)(b[j++] >>> 32);
+	p = 0;
+	for (j = 0; j < backwardNr; j++)
+	    ord[(int)b[j]] = positions[p++];
+	for (i = 0; i < forwardNr; i++)
+	    ord[(int)f[i]] = positions[p++];
+    }
+
+    /**
+     * numbers the positions 0.. again, closing the gaps left by removed vertices
+     */
+    private void renumber() {
+	long[] order = new long[vertexNr];
+	int n = 0;
+	for (int v = 0; v < vertexNr; v++)
+	    if (vertexAlive[v])
+		order[n++] = (long)ord[v] << 32 | v;
+	Arrays.sort(order, 0, n);
+	for (int i = 0; i < n; i++)
+	    ord[(int)order[i]] = i;
+	nextPosition = n;
+    }
+
+    /**
+     * recomputes the order from scratch by Kahn's algorithm
+     * @return false if the residual graph is cyclic
+     */
+    private boolean computeOrder() {
+	int[] inDegree = new int[vertexNr];
+	for (int e = 0; e < edgeNr; e++)
+	    if (residual[e])
+		inDegree[target[e]]++;
+	int top = 0, position = 0;
+	for (int v = 0; v < vertexNr; v++)
+	    if (vertexAlive[v] && inDegree[v] == 0)
+		stack[top++] = v;
+	while (top > 0) {
+	    int v = stack[--top];
+	    ord[v] = position++;
+	    for (int i = 0; i < outNr[v]; i++) {
+		int e = outEdges[v][i];
+		if (residual[e] && --inDegree[target[e]] == 0)
+		    stack[top++] = target[e];
+	    }
+	}
+	nextPosition = position;
+	int alive = 0;
+	for (int v = 0; v < vertexNr; v++)
+	    if (vertexAlive[v])
+		alive++;
+	return position == alive;
+    }
+
+    /**
+     * checks that every residual edge points forward in the order, in time O(m)
+     */
+    public boolean isConsistent() {
+	for (int e = 0; e < edgeNr; e++)
+	    if (residual[e] && (ord[source[e]] >= ord[target[e]]
+				|| !vertexResidual[source[e]] || !vertexResidual[target[e]]))
+		return false;
+	return true;
+    }
+
+    protected int getOutDegree(int v) {
+	return outNr[v];
+    }
+
+    protected int getOutEdge(int v, int i) {
+	return outEdges[v][i];
+    }
+
+    protected int getInDegree(int v) {
+	return inNr[v];
+    }
+
+    protected int getInEdge(int v, int i) {
+	return inEdges[v][i];
+    }
+
+    protected int getVertexNr() {
+	return vertexNr;
+    }
+
+    protected int getEdgeNr() {
+	return edgeNr;
+    }
+
+    private int newVertex() {
+	if (vertexNr == vertices.length) {
+	    int capacity = Math.max(16, 2 * vertexNr);
+	    Object[] newVertices = new Object[capacity];
+	    System.arraycopy(vertices, 0, newVertices, 0, vertexNr);
+	    vertices = newVertices;
+	    vertexWeight = grow(vertexWeight, capacity);
+	    vertexAlive = grow(vertexAlive, capacity);
+	    vertexResidual = grow(vertexResidual, capacity);
+	    vertexTime = grow(vertexTime, capacity);
+	    int[][] newOut = new int[capacity][], newIn = new int[capacity][];
+	    System.arraycopy(outEdges, 0, newOut, 0, vertexNr);
+	    System.arraycopy(inEdges, 0, newIn, 0, vertexNr);
+	    outEdges = newOut;
+	    inEdges = newIn;
+	    outNr = grow(outNr, capacity);
+	    inNr = grow(inNr, capacity);
+	    ord = grow(ord, capacity);
+	    mark = grow(mark, capacity);
+	    parentEdge = grow(parentEdge, capacity);
+	    forward = grow(forward, capacity);
+	    backward = grow(backward, capacity);
+	    stack = grow(stack, capacity);
+	}
+	outEdges[vertexNr] = new int[2];
+	inEdges[vertexNr] = new int[2];
+	return vertexNr++;
+    }
+
+    private int newEdge() {
+	if (edgeNr == edges.length) {
+	    int capacity = Math.max(16, 2 * edgeNr);
+	    Edge[] newEdges = new Edge[capacity];
+	    System.arraycopy(edges, 0, newEdges, 0, edgeNr);
+	    edges = newEdges;
+	    source = grow(source, capacity);
+	    target = grow(target, capacity);
+	    edgeWeight = grow(edgeWeight, capacity);
+	    edgeAlive = grow(edgeAlive, capacity);
+	    residual = grow(residual, capacity);
+	    edgeTime = grow(edgeTime, capacity);
+	}
+	return edgeNr++;
+    }
+
+    /**
+     * @return array itself if it has the given size, otherwise a copy with at least that size
+     */
+    private static int[] grow(int[] array, int size) {
+	if (array.length >= size)
+	    return array;
+	int[] copy = new int[Math.max(size, 2 * array.length)];
+	System.arraycopy(array, 0, copy, 0, array.length);
+	return copy;
+    }
+
+    private static double[] grow(double[] array, int size) {
+	double[] copy = new double[Math.max(size, array.length)];
+	System.arraycopy(array, 0, copy, 0, array.length);
+	return copy;
+    }
+
+    private static boolean[] grow(boolean[] array, int size) {
+	boolean[] copy = new boolean[Math.max(size, array.length)];
+	System.arraycopy(array, 0, copy, 0, array.length);
+	return copy;
+    }
+
+    /**
+     * adopts the result of a finished reoptimization and starts a new one
+     * when due
+     */
+    private void changed() {
+	adoptReoptimized();
+	if (reoptimizeInterval > 0 && time - snapshotTime >= reoptimizeInterval && reoptimizer == null)
+	    startReoptimizer();
+    }
+
+    /**
+     * solves a snapshot of the current graph on the calling thread and adopts the result if better
+     */
+    public void reoptimize() {
+	waitForReoptimizer();
+	snapshotTime = time;
+	Object snapshot = createSnapshot();
+	adopt(solveSnapshot(snapshot, rand.nextLong()), time);
+    }
+
+    /**
+     * waits for a running background reoptimization and adopts its result if better
+     */
+    public void waitForReoptimizer() {
+	Thread thread = reoptimizer;
+	if (thread == null)
+	    return;
+	try {
+	    thread.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException("interrupted while waiting for reoptimization");
+	}
+	adoptReoptimized();
+    }
+
+    private void startReoptimizer() {
+	final Object snapshot = createSnapshot();
+	final long seed = rand.nextLong();
+	final int snapshotTime = time;
+	this.snapshotTime = snapshotTime;
+	reoptimizer = new Thread() {
+		public void run() {
+		    try {
+			int[] result = solveSnapshot(snapshot, seed);
+			synchronized (DynamicFeedbackSet.this) {
+			    reoptimized = result;
+			    reoptimizedTime = snapshotTime;
+			}
+		    } catch (Throwable e) {
+			synchronized (DynamicFeedbackSet.this) {
+			    reoptimizeFailure = e;
+			}
+		    }
+		}
+	    };
+	reoptimizer.setDaemon(true);
+	reoptimizer.start();
+    }
+
+    private void adoptReoptimized() {
+	int[] result;
+	int snapshotTime;
+	synchronized (this) {
+	    if (reoptimizeFailure != null) {
+		Throwable failure = reoptimizeFailure;
+		reoptimizeFailure = null;
+		reoptimizer = null;
+		GRASPSolver.rethrow(failure);
+	    }
+	    result = reoptimized;
+	    snapshotTime = reoptimizedTime;
+	    reoptimized = null;
+	}
+	if (result == null)
+	    return;
+	reoptimizer = null;
+	adopt(result, snapshotTime);
+    }
+
+    /**
+     * replaces the feedback set by the solution of a snapshot taken at snapshotTime, if that is
+     * better once the edges inserted since are added; otherwise nothing changes
+     * @param solution vertex or edge indices, as returned by solveSnapshot
+     */
+    private void adopt(int[] solution, int snapshotTime) {
+	boolean[] oldResidual = (boolean[])residual.clone();
+	boolean[] oldVertexResidual = (boolean[])vertexResidual.clone();
+	int[] oldOrd = (int[])ord.clone();
+	int oldNextPosition = nextPosition;
+	double oldWeight = weight;
+	boolean[] inSolution = new boolean[Math.max(vertexNr, edgeNr)];
+	for (int i = 0; i < solution.length; i++)
+	    inSolution[solution[i]] = true;
+	applySolution(inSolution, snapshotTime);
+	// edges inserted since the snapshot are inserted again
+	for (int e = 0; e < edgeNr; e++)
+	    if (edgeAlive[e] && edgeTime[e] > snapshotTime)
+		residual[e] = false;
+	boolean adopted = computeOrder();
+	if (adopted) {
+	    for (int e = 0; e < edgeNr && adopted; e++)
+		if (edgeAlive[e] && edgeTime[e] > snapshotTime)
+		    try {
+			insertEdge(e);
+		    } catch (IllegalArgumentException ex) {
+			adopted = false;
+		    }
+	    weight = computeWeight();
+	    adopted = adopted && weight < oldWeight;
+	}
+	if (!adopted) {
+	    residual = oldResidual;
+	    vertexResidual = oldVertexResidual;
+	    ord = oldOrd;
+	    nextPosition = oldNextPosition;
+	    weight = oldWeight;
+	}
+    }
+
+    /**
+     * @return a copy of the current graph, for solveSnapshot
+     */
+    protected abstract Object createSnapshot();
+
+    /**
+     * solves a snapshot; runs in the background, so it must not touch this object
+     * @return the indices of the elements of the feedback set
+     */
+    protected abstract int[] solveSnapshot(Object snapshot, long seed);
+
+    /**
+     * sets residual and vertexResidual of all vertices and edges inserted up to snapshotTime,
+     * making the elements in inSolution the feedback set
+     */
+    protected abstract void applySolution(boolean[] inSolution, int snapshotTime);
+
+    /**
+     * @return the weight of the feedback set, computed from scratch
+     */
+    protected abstract double computeWeight();
+
+    /**
+     * @return the time at which vertex v was inserted
+     */
+    protected int getVertexTime(int v) {
+	return vertexTime[v];
+    }
+
+    /**
+     * @return the time at which edge e was inserted
+     */
+    protected int getEdgeTime(int e) {
+	return edgeTime[e];
+    }
+
+}
@@ -0,0 +1,180 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+
+/**
+ * FVS of a changing graph: an inserted edge closing a cycle in the residual graph makes the
+ * cheapest removable vertex of that cycle join the FVS, together with its edges; a vertex with
+ * a loop always belongs to the FVS
+ * vertices given as FeedbackVertex objects keep their weight, infinity marking vertices that
+ * must not be removed; other vertices weigh 1
+ */
+public class DynamicFeedbackVertexSet extends DynamicFeedbackSet {
+
+    private int iterations;
+
+    public DynamicFeedbackVertexSet() {
+	this(10);
+    }
+
+    /**
+     * @param iterations GRASP iterations per component when reoptimizing a snapshot
+     */
+    public DynamicFeedbackVertexSet(int iterations) {
+	this.iterations = iterations;
+    }
+
+    protected boolean countsEdge(int e) {
+	return false;
+    }
+
+    /**
+     * @throws IllegalArgumentException if e closes a cycle without removable vertex
+     */
+    protected void insertEdge(int e) {
+	int s = source[e], t = target[e];
+	if (s == t) {
+	    if (vertexResidual[s]) {
+		if (vertexWeight[s] == Double.POSITIVE_INFINITY)
+		    throw new IllegalArgumentException("loop at vertex that must not be removed: " + edges[e]);
+		moveToFVS(s);
+	    }
+	    return;
+	}
+	while (vertexResidual[s] && vertexResidual[t]) {
+	    int pathLength = addToOrder(e);
+	    if (pathLength < 0)
+		return;
+	    // the cycle consists of t and the targets of the path edges, the last one being s
+	    int cheapest = vertexWeight[t] < Double.POSITIVE_INFINITY ? t : -1;
+	    for (int i = 0; i < pathLength; i++) {
+		int v = target[getPathEdge(i)];
+		if (vertexWeight[v] < Double.POSITIVE_INFINITY
+		    && (cheapest == -1 || vertexWeight[v] < vertexWeight[cheapest]))
+		    cheapest = v;
+	    }
+	    if (cheapest == -1)
+		throw new IllegalArgumentException("cycle without removable vertex: " + edges[e]);
+	    moveToFVS(cheapest);
+	}
+    }
+
+    private void moveToFVS(int v) {
+	vertexResidual[v] = false;
+	weight += vertexWeight[v];
+	for (int i = 0; i < getOutDegree(v); i++)
+	    residual[getOutEdge(v, i)] = false;
+	for (int i = 0; i < getInDegree(v); i++)
+	    residual[getInEdge(v, i)] = false;
+    }
+
+    /**
+     * puts back v or FVS vertices next to it, if they no longer close a cycle
+     */
+    protected void repair(int v) {
+	putBack(v);
+	for (int i = 0; i < getOutDegree(v); i++)
+	    putBack(target[getOutEdge(v, i)]);
+	for (int i = 0; i < getInDegree(v); i++)
+	    putBack(source[getInEdge(v, i)]);
+    }
+
+    private void putBack(int v) {
+	if (vertexResidual[v] || hasLoop(v))
+	    return;
+	vertexResidual[v] = true;
+	boolean acyclic = true;
+	for (int i = 0; i < getOutDegree(v) && acyclic; i++) {
+	    int e = getOutEdge(v, i);
+	    acyclic = !vertexResidual[target[e]] || addToOrder(e) < 0;
+	}
+	for (int i = 0; i < getInDegree(v) && acyclic; i++) {
+	    int e = getInEdge(v, i);
+	    acyclic = !vertexResidual[source[e]] || addToOrder(e) < 0;
+	}
+	if (acyclic) {
+	    weight -= vertexWeight[v];
+	    return;
+	}
+	// removing edges keeps the order valid
+	vertexResidual[v] = false;
+	for (int i = 0; i < getOutDegree(v); i++)
+	    residual[getOutEdge(v, i)] = false;
+	for (int i = 0; i < getInDegree(v); i++)
+	    residual[getInEdge(v, i)] = false;
+    }
+
+    private boolean hasLoop(int v) {
+	for (int i = 0; i < getOutDegree(v); i++)
+	    if (target[getOutEdge(v, i)] == v)
+		return true;
+	return false;
+    }
+
+    /**
+     * @return the vertices of the FVS
+     */
+    public Set getFeedbackSet() {
+	Set fvs = new HashSet();
+	for (int v = 0; v < getVertexNr(); v++)
+	    if (vertexAlive[v] && !vertexResidual[v])
+		fvs.add(vertices[v]);
+	return fvs;
+    }
+
+    protected double computeWeight() {
+	double weight = 0;
+	for (int v = 0; v < getVertexNr(); v++)
+	    if (vertexAlive[v] && !vertexResidual[v])
+		weight += vertexWeight[v];
+	return weight;
+    }
+
+    /**
+     * @return a FeedbackVertexGraph whose vertices have their index as ID; vertices with loops
+     * are left out, as they are in the FVS anyway
+     */
+    protected Object createSnapshot() {
+	FeedbackVertexGraph snapshot = new FeedbackVertexGraph();
+	FeedbackVertex[] vertexObjects = new FeedbackVertex[getVertexNr()];
+	for (int v = 0; v < vertexObjects.length; v++)
+	    if (vertexAlive[v] && !hasLoop(v)) {
+		double weight = vertexWeight[v] == Double.POSITIVE_INFINITY
+		    ? FeedbackVertex.infinity : vertexWeight[v];
+		vertexObjects[v] = new FeedbackVertex(weight, v);
+		snapshot.addVertex(vertexObjects[v]);
+	    }
+	for (int e = 0; e < getEdgeNr(); e++) {
+	    if (!edgeAlive[e])
+		continue;
+	    FeedbackVertex s = vertexObjects[source[e]], t = vertexObjects[target[e]];
+	    if (s != null && t != null && !snapshot.containsEdge(s, t))
+		snapshot.addEdge(s, t);
+	}
+	return snapshot;
+    }
+
+    protected int[] solveSnapshot(Object snapshot, long seed) {
+	Set fvs = new ComponentSolver(1).findFeedbackVertexSet((FeedbackVertexGraph)snapshot,
+							       iterations, seed);
+	int[] result = new int[fvs.size()];
+	int i = 0;
+	Iterator it = fvs.iterator();
+	while (it.hasNext())
+	    result[i++] = ((Integer)it.next()).intValue();
+	return result;
+    }
+
+    protected void applySolution(boolean[] inSolution, int snapshotTime) {
+	for (int v = 0; v < getVertexNr(); v++)
+	    if (vertexAlive[v])
+		vertexResidual[v] = getVertexTime(v) > snapshotTime || !inSolution[v] && !hasLoop(v);
+	for (int e = 0; e < getEdgeNr(); e++)
+	    if (edgeAlive[e] && getEdgeTime(e) <= snapshotTime)
+		residual[e] = source[e] != target[e]
+		    && vertexResidual[source[e]] && vertexResidual[target[e]];
+    }
+
+}
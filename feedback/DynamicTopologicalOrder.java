@@ -0,0 +1,336 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * topological order of an acyclic subgraph of a CSRGraph, which may grow by single vertices and edges
+ * the order is maintained as done by Pearce and Kelly: inserting an edge against the order
+ * only searches and reorders the vertices whose positions lie between its endpoints
+ * edges are only part of the subgraph once added, even if both endpoints are
+ */
+public class DynamicTopologicalOrder {
+
+    private CSRGraph graph;
+    private boolean[] active, edgeActive;
+    // position of each vertex in the order, and vertex at each position
+    private int[] ord, vertexAt;
+    // scratch space for searches and reordering
+    private int[] mark, stack, forward, backward, positions;
+    private int stamp = 0;
+    private int forwardNr, backwardNr;
+
+    public DynamicTopologicalOrder(CSRGraph graph) {
+	this.graph = graph;
+	int n = graph.getVertexNr();
+	active = new boolean[n];
+	edgeActive = new boolean[graph.getEdgeNr()];
+	ord = new int[n];
+	vertexAt = new int[n];
+	mark = new int[n];
+	stack = new int[n];
+	forward = new int[n];
+	backward = new int[n];
+	positions = new int[n];
+	for (int v = 0; v < n; v++)
+	    ord[v] = vertexAt[v] = v;
+    }
+
+    public CSRGraph getGraph() {
+	return graph;
+    }
+
+    /**
+     * replaces the subgraph by the one induced by the given vertices
+     * @return false if that subgraph contains a cycle, in which case the subgraph is left empty
+     */
+    public boolean reset(boolean[] vertices) {
+	return reset(vertices, null);
+    }
+
+    /**
+     * replaces the subgraph by the given vertices and those edges between them that are in edges
+     * @param edges null for all edges
+     * @return false if that subgraph contains a cycle, in which case the subgraph is left empty
+     */
+    public boolean reset(boolean[] vertices, boolean[] edges) {
+	int n = graph.getVertexNr();
+	Arrays.fill(active, false);
+	Arrays.fill(edgeActive, false);
+	stamp = 0;
+	// Kahn's algorithm on the induced subgraph, using mark as in-degree
+	int included = 0, top = 0;
+	Arrays.fill(mark, 0);
+	for (int e = 0; e < graph.getEdgeNr(); e++)
+	    if (includes(vertices, edges, e))
+		mark[graph.getTarget(e)]++;
+	for (int v = 0; v < n; v++)
+	    if (vertices[v]) {
+		included++;
+		if (mark[v] == 0)
+		    stack[top++] = v;
+	    }
+	int sorted = 0;
+	while (top > 0) {
+	    int v = stack[--top];
+	    forward[sorted++] = v;
+	    for (int e = graph.getOutStart(v); e < graph.getOutEnd(v); e++) {
+		int succ = graph.getTarget(e);
+		if (includes(vertices, edges, e) && --mark[succ] == 0)
+		    stack[top++] = succ;
+	    }
+	}
+	Arrays.fill(mark, 0);
+	if (sorted < included)
+	    return false;
+	for (int p = 0; p < sorted; p++)
+	    ord[forward[p]] = p;
+	// other vertices go right behind their last predecessor in the subgraph,
+	// where they can often be inserted without reordering
+	Arrays.fill(positions, -1);
+	for (int v = n - 1; v >= 0; v--)
+	    if (!vertices[v]) {
+		int anchor = 0;
+		for (int i = graph.getInStart(v); i < graph.getInEnd(v); i++) {
+		    int pre = graph.getSource(graph.getInEdge(i));
+		    if (vertices[pre])
+			anchor = Math.max(anchor, ord[pre] + 1);
+		}
+		// list of vertices per anchor, linked via backward
+		backward[v] = positions[anchor];
+		positions[anchor] = v;
+	    }
+	int pos = 0;
+	for (int p = 0; p <= sorted; p++) {
+	    if (p > 0)
+		place(forward[p - 1], pos++);
+	    if (p < n)
+		for (int v = positions[p]; v != -1; v = backward[v])
+		    place(v, pos++);
+	}
+	for (int v = 0; v < n; v++)
+	    active[v] = vertices[v];
+	for (int e = 0; e < graph.getEdgeNr(); e++)
+	    edgeActive[e] = includes(vertices, edges, e);
+	return true;
+    }
+
+    private boolean includes(boolean[] vertices, boolean[] edges, int e) {
+	return (edges == null || edges[e]) && vertices[graph.getSource(e)] && vertices[graph.getTarget(e)];
+    }
+
+    /**
+     * checks that every edge of the subgraph points forward in the order, in time O(m)
+     */
+    public boolean isConsistent() {
+	for (int e = 0; e < graph.getEdgeNr(); e++)
+	    if (edgeActive[e] && ord[graph.getSource(e)] >= ord[graph.getTarget(e)])
+		return false;
+	return true;
+    }
+
+    public boolean isActive(int v) {
+	return active[v];
+    }
+
+    public boolean isEdgeActive(int e) {
+	return edgeActive[e];
+    }
+
+    /**
+     * @return the position of v in the order; only meaningful for active vertices
+     */
+    public int getPosition(int v) {
+	return ord[v];
+    }
+
+    /**
+     * adds v to the subgraph without any edges
+     */
+    public void addVertex(int v) {
+	active[v] = true;
+    }
+
+    /**
+     * removes v and its edges from the subgraph; the order stays valid
+     */
+    public void removeVertex(int v) {
+	active[v] = false;
+	for (int e = graph.getOutStart(v); e < graph.getOutEnd(v); e++)
+	    edgeActive[e] = false;
+	for (int i = graph.getInStart(v); i < graph.getInEnd(v); i++)
+	    edgeActive[graph.getInEdge(i)] = false;
+    }
+
+    /**
+     * removes e from the subgraph; the order stays valid
+     */
+    public void removeEdge(int e) {
+	edgeActive[e] = false;
+    }
+
+    /**
+     * adds e to the subgraph, reordering vertices if needed; both endpoints must be active
+     * @return false if e would close a cycle, in which case it is not added
+     */
+    public boolean addEdge(int e) {
+	int s = graph.getSource(e), t = graph.getTarget(e);
+	if (!active[s] || !active[t])
+	    throw new IllegalArgumentException("edge " + e + " has inactive endpoint");
+	if (s == t)
+	    return false;
+	int lb = ord[t], ub = ord[s];
+	if (lb > ub) {
+	    edgeActive[e] = true;
+	    return true;
+	}
+	stamp += 2;
+	// vertices reachable from t that lie before s
+	if (!searchForward(push(0, t, stamp), s, ub))
+	    return false;
+	// vertices reaching s that lie after t
+	searchBackward(push(0, s, stamp + 1), lb);
+	reorder();
+	edgeActive[e] = true;
+	return true;
+    }
+
+    /**
+     * adds v with all its edges to active vertices; the edges are handled in two batches,
+     * so there are at most two searches, no matter how many edges there are
+     * @return false if this would close a cycle, in which case v stays inactive
+     */
+    public boolean insertVertex(int v) {
+	if (graph.getEdge(v, v) != -1)
+	    return false;
+	active[v] = true;
+	// v has to move behind predecessors after it; no cycle possible yet
+	stamp += 2;
+	int top = 0;
+	for (int i = graph.getInStart(v); i < graph.getInEnd(v); i++) {
+	    int pre = graph.getSource(graph.getInEdge(i));
+	    if (active[pre] && ord[pre] > ord[v] && mark[pre] != stamp + 1)
+		top = push(top, pre, stamp + 1);
+	}
+	if (top > 0) {
+	    forward[0] = v;
+	    forwardNr = 1;
+	    searchBackward(top, ord[v]);
+	    reorder();
+	}
+	for (int i = graph.getInStart(v); i < graph.getInEnd(v); i++)
+	    if (active[graph.getSource(graph.getInEdge(i))])
+		edgeActive[graph.getInEdge(i)] = true;
+	// v has to move before successors in front of it
+	stamp += 2;
+	top = 0;
+	int lb = ord[v];
+	for (int e = graph.getOutStart(v); e < graph.getOutEnd(v); e++) {
+	    int succ = graph.getTarget(e);
+	    if (active[succ] && ord[succ] < ord[v] && mark[succ] != stamp) {
+		top = push(top, succ, stamp);
+		lb = Math.min(lb, ord[succ]);
+	    }
+	}
+	if (top > 0) {
+	    if (!searchForward(top, v, ord[v])) {
+		removeVertex(v);
+		return false;
+	    }
+	    searchBackward(push(0, v, stamp + 1), lb);
+	    reorder();
+	}
+	for (int e = graph.getOutStart(v); e < graph.getOutEnd(v); e++)
+	    if (active[graph.getTarget(e)])
+		edgeActive[e] = true;
+	return true;
+    }
+
+    /**
+     * pushes v onto the search stack and marks it
+     * @return the new stack size
+     */
+    private int push(int top, int v, int value) {
+	mark[v] = value;
+	stack[top] = v;
+	return top + 1;
+    }
+
+    /**
+     * collects the vertices reachable from the top vertices of the stack with position < ub
+     * into forward; the start vertices must be marked with stamp
+     * @return false if target is reachable
+     */
+    private boolean searchForward(int top, int target, int ub) {
+	forwardNr = 0;
+	while (top > 0) {
+	    int v = stack[--top];
+	    forward[forwardNr++] = v;
+	    for (int e = graph.getOutStart(v); e < graph.getOutEnd(v); e++) {
+		if (!edgeActive[e])
+		    continue;
+		int succ = graph.getTarget(e);
+		if (succ == target)
+		    return false;
+		if (mark[succ] != stamp && ord[succ] < ub)
+		    top = push(top, succ, stamp);
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * collects the vertices reaching the top vertices of the stack with position > lb
+     * into backward; the start vertices must be marked with stamp + 1
+     */
+    private void searchBackward(int top, int lb) {
+	backwardNr = 0;
+	while (top > 0) {
+	    int v = stack[--top];
+	    backward[backwardNr++] = v;
+	    for (int i = graph.getInStart(v); i < graph.getInEnd(v); i++) {
+		int e = graph.getInEdge(i);
+		if (!edgeActive[e])
+		    continue;
+		int pre = graph.getSource(e);
+		if (mark[pre] != stamp + 1 && ord[pre] > lb)
+		    top = push(top, pre, stamp + 1);
+	    }
+	}
+    }
+
+    /**
+     * moves the backward vertices in front of the forward vertices, using the positions of both
+     */
+    private void reorder() {
+	// sort both sets by position, via their positions
+	for (int i = 0; i < forwardNr; i++)
+	    forward[i] = ord[forward[i]];
+	for (int i = 0; i < backwardNr; i++)
+	    backward[i] = ord[backward[i]];
+	Arrays.sort(forward, 0, forwardNr);
+	Arrays.sort(backward, 0, backwardNr);
+	// merge positions
+	int f = 0, b = 0, p = 0;
+	while (f < forwardNr || b < backwardNr)
+	    if (b == backwardNr || f < forwardNr && forward[f] < backward[b])
+		positions[p++] = forward[f++];
+	    else
+		positions[p++] = backward[b++];
+	// back to vertices, before positions get overwritten
+	for (int i = 0; i < forwardNr; i++)
+	    forward[i] = vertexAt[forward[i]];
+	for (int i = 0; i < backwardNr; i++)
+	    backward[i] = vertexAt[backward[i]];
+	p = 0;
+	for (int i = 0; i < backwardNr; i++)
+	    place(backward[i], positions[p++]);
+	for (int i = 0; i < forwardNr; i++)
+	    place(forward[i], positions[p++]);
+    }
+
+    private void place(int v, int position) {
+	ord[v] = position;
+	vertexAt[position] = v;
+    }
+
+}
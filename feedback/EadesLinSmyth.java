@@ -0,0 +1,155 @@
+package feedback;
+
+import java.util.*;
+
+import org._3pq.jgrapht.*;
+
+/**
+ * the FES heuristic of Eades, Lin and Smyth: repeatedly moves sinks to the end of a vertex
+ * order, sources to its front, and otherwise the vertex with the largest outDegree - inDegree
+ * to its front; the edges leading backwards in the order form a FES
+ * vertices are kept in buckets by their degree difference, so it runs in O(V+E)
+ * edge weights are not considered
+ */
+public class EadesLinSmyth {
+
+    // buckets 0 and 1 hold sinks and sources, the others outDegree - inDegree
+    private static final int SINKS = 0, SOURCES = 1;
+
+    /**
+     * @param source source vertex of each edge, vertices being 0..vertexNr-1
+     * @param target target vertex of each edge; parallel edges and loops are allowed
+     * @return the vertex order
+     */
+    public static int[] order(int vertexNr, int[] source, int[] target) {
+	int n = vertexNr;
+	// adjacency lists of edge indices, loops left out
+	int[] outStart = new int[n + 1], inStart = new int[n + 1];
+	for (int e = 0; e < source.length; e++)
+	    if (source[e] != target[e]) {
+		outStart[source[e] + 1]++;
+		inStart[target[e] + 1]++;
+	    }
+	int[] outDegree = new int[n], inDegree = new int[n];
+	int maxDegree = 0;
+	for (int v = 0; v < n; v++) {
+	    outDegree[v] = outStart[v + 1];
+	    inDegree[v] = inStart[v + 1];
+	    maxDegree = Math.max(maxDegree, Math.max(outDegree[v], inDegree[v]));
+	    outStart[v + 1] += outStart[v];
+	    inStart[v + 1] += inStart[v];
+	}
+	int[] outEdge = new int[outStart[n]], inEdge = new int[inStart[n]];
+	int[] outFill = (int[])outStart.clone(), inFill = (int[])inStart.clone();
+	for (int e = 0; e < source.length; e++)
+	    if (source[e] != target[e]) {
+		outEdge[outFill[source[e]]++] = e;
+		inEdge[inFill[target[e]]++] = e;
+	    }
+
+	// doubly linked bucket lists
+	int offset = 2 + maxDegree;
+	int[] head = new int[offset + maxDegree + 1];
+	Arrays.fill(head, -1);
+	int[] next = new int[n], prev = new int[n], bucket = new int[n];
+	for (int v = 0; v < n; v++)
+	    link(v, bucketOf(outDegree[v], inDegree[v], offset), head, next, prev, bucket);
+	int maxBucket = head.length - 1;
+	boolean[] removed = new boolean[n];
+
+	int[] order = new int[n];
+	int front = 0, back = n - 1;
+	while (front <= back) {
+	    int v;
+	    if (head[SINKS] != -1) {
+		v = head[SINKS];
+		order[back--] = v;
+	    } else {
+		if (head[SOURCES] != -1)
+		    v = head[SOURCES];
+		else {
+		    while (head[maxBucket] == -1)
+			maxBucket--;
+		    v = head[maxBucket];
+		}
+		order[front++] = v;
+	    }
+	    unlink(v, head, next, prev, bucket);
+	    removed[v] = true;
+	    // neighbours lose an edge and may change buckets
+	    for (int i = outStart[v]; i < outStart[v + 1]; i++) {
+		int w = target[outEdge[i]];
+		if (removed[w])
+		    continue;
+		inDegree[w]--;
+		unlink(w, head, next, prev, bucket);
+		int b = bucketOf(outDegree[w], inDegree[w], offset);
+		link(w, b, head, next, prev, bucket);
+		if (b > maxBucket)
+		    maxBucket = b;
+	    }
+	    for (int i = inStart[v]; i < inStart[v + 1]; i++) {
+		int u = source[inEdge[i]];
+		if (removed[u])
+		    continue;
+		outDegree[u]--;
+		unlink(u, head, next, prev, bucket);
+		link(u, bucketOf(outDegree[u], inDegree[u], offset), head, next, prev, bucket);
+	    }
+	}
+	return order;
+    }
+
+    private static int bucketOf(int outDegree, int inDegree, int offset) {
+	if (outDegree == 0)
+	    return SINKS;
+	if (inDegree == 0)
+	    return SOURCES;
+	return offset + outDegree - inDegree;
+    }
+
+    private static void link(int v, int b, int[] head, int[] next, int[] prev, int[] bucket) {
+	bucket[v] = b;
+	prev[v] = -1;
+	next[v] = head[b];
+	if (head[b] != -1)
+	    prev[head[b]] = v;
+	head[b] = v;
+    }
+
+    private static void unlink(int v, int[] head, int[] next, int[] prev, int[] bucket) {
+	if (prev[v] != -1)
+	    next[prev[v]] = next[v];
+	else
+	    head[bucket[v]] = next[v];
+	if (next[v] != -1)
+	    prev[next[v]] = prev[v];
+    }
+
+    /**
+     * @param g may contain parallel edges and loops; loops are always part of the FES
+     * @return the edges of g leading backwards in the order, which form a FES
+     */
+    public static Set findFeedbackEdgeSet(DirectedGraph g) {
+	Object[] vertices = g.vertexSet().toArray();
+	HashMap index = new HashMap();
+	for (int v = 0; v < vertices.length; v++)
+	    index.put(vertices[v], new Integer(v));
+	Edge[] edges = (Edge[])g.edgeSet().toArray(new Edge[0]);
+	int[] source = new int[edges.length], target = new int[edges.length];
+	for (int e = 0; e < edges.length; e++) {
+	    source[e] = ((Integer)index.get(edges[e].getSource())).intValue();
+	    target[e] = ((Integer)index.get(edges[e].getTarget())).intValue();
+	}
+	int[] order = order(vertices.length, source, target);
+	int[] position = new int[order.length];
+	for (int i = 0; i < order.length; i++)
+	    position[order[i]] = i;
+	Set fes = new HashSet();
+	for (int e = 0; e < edges.length; e++)
+	    if (position[source[e]] >= position[target[e]])
+		fes.add(edges[e]);
+	return fes;
+    }
+
+}
@@ -0,0 +1,213 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * minimum feedback sets of very small graphs given by vertex numbers 0..n-1, found by
+ * dynamic programming or enumeration over vertex subsets; time is exponential in n
+ * also provides the cycle packing lower bounds used by the branch and bound solvers
+ */
+public class ExactFeedbackSets {
+
+    // subsets are stored as bits of an int
+    public static final int MAX_VERTICES = 20;
+
+    /**
+     * FES construction finishes parts of up to this many vertices by minimumFESOrder, whose
+     * dynamic program takes about 2^n n^2 / 2 steps, some 50000 for 10 vertices
+     */
+    public static final int FES_PART_LIMIT = 10;
+
+    /**
+     * FVSProblem.split solves components of up to this many vertices by minimumFVS, whose
+     * enumeration takes about 2^n n steps, as many for 12 vertices as the FES case for 10
+     */
+    public static final int FVS_PART_LIMIT = 12;
+
+    /**
+     * finds a vertex order with minimal weight of backward edges, i.e. edges from a later to an
+     * earlier vertex; the backward edges form a minimum FES
+     * @param weight weight[u][v] is the weight of the edges from u to v, 0 if there are none
+     * @return the order as sequence of vertices
+     */
+    public static int[] minimumFESOrder(double[][] weight) {
+	int n = weight.length;
+	if (n > MAX_VERTICES)
+	    throw new IllegalArgumentException("too many vertices: " + n);
+	int full = (1 << n) - 1;
+	// cost[set]: minimal backward weight if the vertices of set come first
+	double[] cost = new double[full + 1];
+	int[] last = new int[full + 1];
+	Arrays.fill(cost, Double.POSITIVE_INFINITY);
+	cost[0] = 0;
+	for (int set = 0; set < full; set++)
+	    for (int v = 0; v < n; v++) {
+		if ((set & (1 << v)) != 0)
+		    continue;
+		// edges from v to the vertices before it become backward
+		double c = cost[set];
+		for (int rest = set; rest != 0; rest &= rest - 1)
+		    c += weight[v][Integer.numberOfTrailingZeros(rest)];
+		int next = set | (1 << v);
+		if (c < cost[next]) {
+		    cost[next] = c;
+		    last[next] = v;
+		}
+	    }
+	int[] order = new int[n];
+	for (int i = n - 1, set = full; i >= 0; i--) {
+	    order[i] = last[set];
+	    set &= ~(1 << last[set]);
+	}
+	return order;
+    }
+
+    /**
+     * @param successors successors[v] has bit u set if there is an edge from v to u
+     * @param weight vertex weights, negative for vertices that must not be removed
+     * @return the vertices of a minimum FVS as bits, -1 if there is no FVS
+     */
+    public static int minimumFVS(int[] successors, double[] weight) {
+	int n = successors.length;
+	if (n > MAX_VERTICES)
+	    throw new IllegalArgumentException("too many vertices: " + n);
+	int full = (1 << n) - 1;
+	int best = -1;
+	double bestWeight = 0;
+	for (int set = 0; set <= full; set++) {
+	    double w = 0;
+	    boolean allowed = true;
+	    for (int v = 0; v < n && allowed; v++)
+		if ((set & (1 << v)) != 0) {
+		    allowed = weight[v] >= 0;
+		    w += weight[v];
+		}
+	    if (allowed && (best == -1 || w < bestWeight) && isAcyclic(successors, full & ~set)) {
+		best = set;
+		bestWeight = w;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * @return true if the subgraph induced by the vertices in set is acyclic
+     */
+    private static boolean isAcyclic(int[] successors, int set) {
+	// repeatedly remove vertices without successors in set
+	boolean removed = true;
+	while (set != 0 && removed) {
+	    removed = false;
+	    for (int v = 0; v < successors.length; v++)
+		if ((set & (1 << v)) != 0 && (successors[v] & set) == 0) {
+		    set &= ~(1 << v);
+		    removed = true;
+		}
+	}
+	return set == 0;
+    }
+
+    /**
+     * lower bound for the weight of a FVS: packs shortest cycles such that the cycles
+     * through each vertex take no more than its weight
+     * @param weight vertex weights, Double.POSITIVE_INFINITY for vertices that must not be removed
+     * @return the bound, Double.POSITIVE_INFINITY if there is no FVS
+     */
+    public static double vertexCyclePacking(CSRGraph g, double[] weight) {
+	return cyclePacking(g, (double[])weight.clone(), null);
+    }
+
+    /**
+     * lower bound for the weight of a FES: packs shortest cycles such that the cycles
+     * through each edge take no more than its weight
+     * @param weight edge weights by edge index, Double.POSITIVE_INFINITY for edges that must not be removed
+     * @return the bound, Double.POSITIVE_INFINITY if there is no FES
+     */
+    public static double edgeCyclePacking(CSRGraph g, double[] weight) {
+	return cyclePacking(g, null, (double[])weight.clone());
+    }
+
+    /**
+     * greedily packs cycles, reducing the residual weights of their vertices or edges
+     * by the smallest one on the cycle
+     */
+    private static double cyclePacking(CSRGraph g, double[] vertexResidual, double[] edgeResidual) {
+	double bound = 0;
+	int[] cycle;
+	while ((cycle = shortestCycle(g, vertexResidual, edgeResidual)) != null) {
+	    double min = Double.POSITIVE_INFINITY;
+	    for (int i = 0; i < cycle.length; i++)
+		min = Math.min(min, vertexResidual != null
+			       ? vertexResidual[g.getSource(cycle[i])] : edgeResidual[cycle[i]]);
+	    if (min == Double.POSITIVE_INFINITY)
+		return min;
+	    bound += min;
+	    for (int i = 0; i < cycle.length; i++)
+		if (vertexResidual != null)
+		    vertexResidual[g.getSource(cycle[i])] -= min;
+		else
+		    edgeResidual[cycle[i]] -= min;
+	}
+	return bound;
+    }
+
+    /**
+     * finds a shortest cycle by breadth first search from each vertex
+     * @param vertexResidual only vertices with positive residual are used, null for all
+     * @param edgeResidual only edges with positive residual are used, null for all
+     * @return the edges of the cycle in order, or null if there is none
+     */
+    public static int[] shortestCycle(CSRGraph g, double[] vertexResidual, double[] edgeResidual) {
+	int n = g.getVertexNr();
+	int[] distance = new int[n], parentEdge = new int[n], queue = new int[n];
+	int bestLength = n + 1, bestStart = -1, bestLast = -1;
+	int[] bestParents = null;
+	for (int start = 0; start < n; start++) {
+	    if (vertexResidual != null && vertexResidual[start] <= 0)
+		continue;
+	    Arrays.fill(distance, -1);
+	    distance[start] = 0;
+	    queue[0] = start;
+	    int last = -1;
+	    for (int head = 0, tail = 1; head < tail && last == -1; head++) {
+		int v = queue[head];
+		// no shorter cycle through start possible
+		if (distance[v] + 1 >= bestLength)
+		    break;
+		for (int e = g.getOutStart(v); e < g.getOutEnd(v); e++) {
+		    int w = g.getTarget(e);
+		    if (edgeResidual != null && edgeResidual[e] <= 0
+			|| vertexResidual != null && vertexResidual[w] <= 0)
+			continue;
+		    if (w == start) {
+			last = e;
+			break;
+		    }
+		    if (distance[w] == -1) {
+			distance[w] = distance[v] + 1;
+			parentEdge[w] = e;
+			queue[tail++] = w;
+		    }
+		}
+	    }
+	    if (last != -1) {
+		bestLength = distance[g.getSource(last)] + 1;
+		bestStart = start;
+		bestLast = last;
+		bestParents = (int[])parentEdge.clone();
+		if (bestLength == 1)
+		    break;
+	    }
+	}
+	if (bestStart == -1)
+	    return null;
+	int[] cycle = new int[bestLength];
+	cycle[bestLength - 1] = bestLast;
+	for (int i = bestLength - 2, v = g.getSource(bestLast); i >= 0; i--) {
+	    cycle[i] = bestParents[v];
+	    v = g.getSource(cycle[i]);
+	}
+	return cycle;
+    }
+
+}
@@ -6,12 +6,19 @@ import org._3pq.jgrapht.*;
 import org._3pq.jgrapht.graph.*;
 import org._3pq.jgrapht.edge.*;
 
-public class FVSEdge extends DirectedEdge {
+public class FVSEdge extends DirectedEdge implements WorkQueue.Element {
 
     // number of missing predecessor -> target connections
     private int preConnect = 0;
     // number of missing source -> successor connections
     private int succConnect = 0;
+    // changes of the connect numbers collected during a batch of graph changes
+    int preDelta = 0, succDelta = 0;
+    // listed for the end of the batch; added during it, so zeros are not reported yet
+    boolean batched = false, batchAdded = false;
+    // entry in the zero edge queue
+    private WorkQueue queue = null;
+    private int queueStamp = 0;
 
     public FVSEdge(Object source, Object target) {
 	super(source, target);
@@ -25,7 +32,7 @@ public class FVSEdge extends DirectedEdge {
 	return succConnect;
     }
 
-    public void setPreConnect(int newValue, Set zeroAdd) {
+    public void setPreConnect(int newValue, WorkQueue zeroAdd) {
 	if (newValue < 0)
 	    throw new IllegalArgumentException(this + ": newValue = " + newValue);
 	preConnect = newValue;
@@ -33,14 +40,24 @@ public class FVSEdge extends DirectedEdge {
 	    zeroAdd.add(this);
     }
 
-    public void setSuccConnect(int newValue, Set zeroAdd) {
+    public void setSuccConnect(int newValue, WorkQueue zeroAdd) {
 	if (newValue < 0)
 	    throw new IllegalArgumentException(this + ": newValue = " + newValue);
 	succConnect = newValue;
- 	if (succConnect == 0)
+	if (succConnect == 0)
 	    zeroAdd.add(this);
    }
 
+    /**
+     * sets the connect numbers without reporting zeros
+     */
+    void initConnects(int preConnect, int succConnect) {
+	if (preConnect < 0 || succConnect < 0)
+	    throw new IllegalArgumentException(this + ": " + preConnect + "/" + succConnect);
+	this.preConnect = preConnect;
+	this.succConnect = succConnect;
+    }
+
     public void incPreConnect() {
 	setPreConnect(preConnect + 1, null);
     }
@@ -49,14 +66,27 @@ public class FVSEdge extends DirectedEdge {
 	setSuccConnect(succConnect + 1, null);
     }
 
-    public void decPreConnect(Set zeroAdd) {
+    public void decPreConnect(WorkQueue zeroAdd) {
 	setPreConnect(preConnect - 1, zeroAdd);
     }
 
-    public void decSuccConnect(Set zeroAdd) {
+    public void decSuccConnect(WorkQueue zeroAdd) {
 	setSuccConnect(succConnect - 1, zeroAdd);
     }
 
+    public WorkQueue getQueue() {
+	return queue;
+    }
+
+    public int getQueueStamp() {
+	return queueStamp;
+    }
+
+    public void setQueueEntry(WorkQueue queue, int stamp) {
+	this.queue = queue;
+	queueStamp = stamp;
+    }
+
     public String toString() {
 	return super.toString() + ":" + preConnect + "/" + succConnect;
     }
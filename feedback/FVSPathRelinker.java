@@ -0,0 +1,178 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * local search and path relinking for feedback vertex sets given as sets of vertex IDs
+ * works on the original graph; the graph without the FVS is kept acyclic with a
+ * DynamicTopologicalOrder, so each re-inserted vertex only needs a bounded search
+ */
+public class FVSPathRelinker {
+
+    private CSRGraph graph;
+    private DynamicTopologicalOrder order;
+    // number of FVS IDs per vertex; a vertex is removed from the graph while it has any
+    private int[] fvsIDs;
+    private boolean[] residual;
+
+    public FVSPathRelinker(CSRGraph graph) {
+	this.graph = graph;
+	order = new DynamicTopologicalOrder(graph);
+	fvsIDs = new int[graph.getVertexNr()];
+	residual = new boolean[graph.getVertexNr()];
+    }
+
+    /**
+     * sets up the graph without fvs
+     * @return false if fvs is no FVS
+     */
+    private boolean init(Set fvs) {
+	Arrays.fill(fvsIDs, 0);
+	Iterator it = fvs.iterator();
+	while (it.hasNext()) {
+	    int v = graph.getIndexOfID(it.next());
+	    if (v != -1)
+		fvsIDs[v]++;
+	}
+	for (int v = 0; v < residual.length; v++)
+	    residual[v] = fvsIDs[v] == 0;
+	return order.reset(residual);
+    }
+
+    /**
+     * removes id from the FVS if the graph stays acyclic
+     * @return true if removed
+     */
+    private boolean tryRemove(Set fvs, Object id) {
+	int v = graph.getIndexOfID(id);
+	if (v != -1) {
+	    // vertex stays removed if it has other IDs in the FVS
+	    if (fvsIDs[v] == 1 && !order.insertVertex(v))
+		return false;
+	    fvsIDs[v]--;
+	}
+	fvs.remove(id);
+	return true;
+    }
+
+    private void add(Set fvs, Object id) {
+	int v = graph.getIndexOfID(id);
+	if (v != -1 && fvsIDs[v]++ == 0)
+	    order.removeVertex(v);
+	fvs.add(id);
+    }
+
+    /**
+     * tries to remove the given IDs from fvs, in the given order
+     * @return number of IDs removed
+     */
+    private int removeRedundant(Set fvs, Object[] ids) {
+	int reduced = 0;
+	for (int i = 0; i < ids.length; i++)
+	    if (fvs.contains(ids[i]) && tryRemove(fvs, ids[i]))
+		reduced++;
+	return reduced;
+    }
+
+    /**
+     * removes redundant IDs from fvs, trying them in iteration order
+     * @return number of IDs removed, 0 if fvs is no FVS
+     */
+    public int removeRedundant(Set fvs) {
+	if (!init(fvs))
+	    return 0;
+	return removeRedundant(fvs, fvs.toArray());
+    }
+
+    /**
+     * removes redundant vertices from an FVS given by vertex indices, trying them in the given order
+     * @param inFVS marks the FVS; cleared for each vertex removed
+     * @return number of vertices removed, 0 if it is no FVS
+     */
+    public int removeRedundant(int[] vertices, int vertexNr, boolean[] inFVS) {
+	for (int v = 0; v < residual.length; v++)
+	    residual[v] = !inFVS[v];
+	if (!order.reset(residual))
+	    return 0;
+	int reduced = 0;
+	for (int i = 0; i < vertexNr; i++) {
+	    int v = vertices[i];
+	    if (inFVS[v] && order.insertVertex(v)) {
+		inFVS[v] = false;
+		reduced++;
+	    }
+	}
+	return reduced;
+    }
+
+    /**
+     * @return the weight of fvs, each vertex counted once
+     */
+    public double getWeight(Set fvs) {
+	boolean[] counted = new boolean[graph.getVertexNr()];
+	double weight = 0;
+	Iterator it = fvs.iterator();
+	while (it.hasNext()) {
+	    int v = graph.getIndexOfID(it.next());
+	    if (v != -1 && !counted[v]) {
+		counted[v] = true;
+		weight += graph.getWeight(v);
+	    }
+	}
+	return weight;
+    }
+
+    /**
+     * walks from one FVS to another: adds the IDs of to one by one, cheapest first,
+     * and drops IDs of from as soon as they become redundant
+     * @return the best FVS strictly between both after local search, or null if there is none
+     */
+    public Set relink(Set from, Set to) {
+	Set current = new HashSet(from);
+	if (!init(current))
+	    return null;
+	Object[] toRemove = difference(from, to);
+	Object[] toAdd = difference(to, from);
+	Arrays.sort(toAdd, new Comparator() {
+		public int compare(Object id1, Object id2) {
+		    return Double.compare(weightOf(id1), weightOf(id2));
+		}
+	    });
+	Set best = null;
+	double bestWeight = 0;
+	for (int next = 0; next < toAdd.length; next++) {
+	    add(current, toAdd[next]);
+	    // once all IDs are added, we have reached to
+	    if (next + 1 < toAdd.length && removeRedundant(current, toRemove) > 0) {
+		double weight = getWeight(current);
+		if (best == null || weight < bestWeight) {
+		    best = new HashSet(current);
+		    bestWeight = weight;
+		}
+	    }
+	}
+	if (best != null)
+	    removeRedundant(best);
+	return best;
+    }
+
+    private double weightOf(Object id) {
+	int v = graph.getIndexOfID(id);
+	return v == -1 ? 0 : graph.getWeight(v);
+    }
+
+    /**
+     * @return the elements of s1 that are not in s2
+     */
+    private static Object[] difference(Set s1, Set s2) {
+	ArrayList result = new ArrayList();
+	Iterator it = s1.iterator();
+	while (it.hasNext()) {
+	    Object o = it.next();
+	    if (!s2.contains(o))
+		result.add(o);
+	}
+	return result.toArray();
+    }
+
+}
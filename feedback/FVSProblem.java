@@ -8,12 +8,60 @@ import org._3pq.jgrapht.edge.*;
 
 import grasp.*;
 
-public class FVSProblem implements GRASPProblem {
+public class FVSProblem implements UndoableGRASPProblem, RelinkableGRASPProblem,
+				   DecomposableGRASPProblem, ExactGRASPProblem, CachedGRASPProblem {
 
     private FeedbackVertexGraph originalGraph, graph;
     private FeedbackVertexReducer reducer;
     // stores IDs of vertices
-    private HashSet fvs = new HashSet();
+    private LoggedSet fvs;
+    // holds the array copy of originalGraph used by local search and relinking; built on
+    // first use and shared by all clones
+    private CSRGraph[] originalCSR;
+    private FVSPathRelinker relinker = null;
+    // the graph is searched for components once it has no more than splitSize vertices
+    private int splitSize = Integer.MAX_VALUE;
+    // reduced graphs up to this size are solved by branch and bound
+    private int exactLimit = BranchAndBoundFVS.DEFAULT_SIZE_LIMIT;
+    // caches FVS of the reduced graph, null disables caching
+    private SolutionCache solutionCache = null;
+    // array copy and canonical form of the reduced graph, set by prepareLookup
+    private CSRGraph kernel = null;
+    private CanonicalGraph kernelForm = null;
+
+    /**
+     * set of IDs which records its changes in the undo log of a graph
+     */
+    private static class LoggedSet extends HashSet {
+
+	private FeedbackVertexGraph graph;
+
+	public LoggedSet(FeedbackVertexGraph graph) {
+	    this.graph = graph;
+	}
+
+	public boolean add(final Object id) {
+	    boolean added = super.add(id);
+	    if (added)
+		graph.log(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    remove(id);
+			}
+		    });
+	    return added;
+	}
+
+	public boolean remove(final Object id) {
+	    boolean removed = super.remove(id);
+	    if (removed)
+		graph.log(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    add(id);
+			}
+		    });
+	    return removed;
+	}
+    }
 
     /**
      * for cloning use only, don't call!
@@ -29,6 +77,8 @@ public class FVSProblem implements GRASPProblem {
 	this.originalGraph = graph;
 	this.graph = (FeedbackVertexGraph)originalGraph.clone();
 	this.reducer = reducer;
+	this.fvs = new LoggedSet(this.graph);
+	this.originalCSR = new CSRGraph[1];
     }
 
     /**
@@ -42,6 +92,152 @@ public class FVSProblem implements GRASPProblem {
 	reducer.reduce(graph, fvs);
     };
 
+    /**
+     * @param exactLimit graphs with up to this many vertices after reduction are solved
+     * exactly by solveExactly, 0 disables exact solving
+     */
+    public void setExactLimit(int exactLimit) {
+	this.exactLimit = exactLimit;
+    }
+
+    /**
+     * solves the problem by branch and bound if the graph has at most exactLimit vertices
+     * once reduced; a problem returned by prepareLookup is reduced already, any other is
+     * reduced on a clone first
+     * @return the IDs of a minimum FVS, or null, also if every FVS takes an infinity vertex
+     */
+    public Object solveExactly() {
+	if (exactLimit == 0)
+	    return null;
+	FVSProblem problem = this;
+	if (kernel == null) {
+	    problem = (FVSProblem)clone();
+	    problem.reduce();
+	}
+	if (problem.graph.vertexSet().size() > exactLimit)
+	    return null;
+	Set kernelFVS = new BranchAndBoundFVS(reducer, BranchAndBoundFVS.DEFAULT_NODE_LIMIT)
+	    .solve(problem.graph);
+	if (kernelFVS == null || takesInfinity(problem.fvs))
+	    return null;
+	kernelFVS.addAll(problem.fvs);
+	return kernelFVS;
+    }
+
+    /**
+     * @return true if ids contain the ID of a vertex that must not be removed, which the
+     * reduction takes only if there is no other way to break a cycle
+     */
+    private boolean takesInfinity(Set ids) {
+	Iterator it = originalGraph.vertexSet().iterator();
+	while (it.hasNext()) {
+	    FeedbackVertex vertex = (FeedbackVertex)it.next();
+	    if (vertex.getWeight() == FeedbackVertex.infinity && ids.contains(vertex.getID().iterator().next()))
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * @param solutionCache caches FVS of the reduced graph, keyed by its canonical form;
+     * null disables caching
+     */
+    public void setSolutionCache(SolutionCache solutionCache) {
+	this.solutionCache = solutionCache;
+    }
+
+    /**
+     * reduces a clone of the problem once, so lookupSolution, storeSolution and solveExactly
+     * share its reduced graph and canonical form
+     * @return the reduced clone, or this if there is no cache or it is reduced already
+     */
+    public CachedGRASPProblem prepareLookup() {
+	if (solutionCache == null || kernel != null)
+	    return this;
+	FVSProblem problem = (FVSProblem)clone();
+	problem.reduce();
+	problem.kernel = new CSRGraph(problem.graph);
+	return problem;
+    }
+
+    private CanonicalGraph getKernelForm() {
+	if (kernelForm == null)
+	    kernelForm = createCanonicalGraph(kernel);
+	return kernelForm;
+    }
+
+    /**
+     * @param exact if only an optimal FVS is wanted
+     * @return the IDs of a FVS made of the cached FVS of the reduced graph and the vertices
+     * taken by the reduction, or null
+     */
+    public Object lookupSolution(boolean exact) {
+	if (solutionCache == null)
+	    return null;
+	FVSProblem problem = (FVSProblem)prepareLookup();
+	if (problem.kernel.getVertexNr() == 0)
+	    return null;
+	CanonicalGraph form = problem.getKernelForm();
+	SolutionCache.Entry entry = solutionCache.get(form);
+	if (entry == null || (exact && !entry.exact))
+	    return null;
+	Set solution = new HashSet(problem.fvs);
+	for (int i = 0; i < entry.solution.length; i++)
+	    solution.addAll(problem.kernel.getIDs(form.getVertex(entry.solution[i])));
+	return solution;
+    }
+
+    /**
+     * caches the vertices of the reduced graph having an ID in solution, if they form a FVS of it
+     * @param solution set of IDs
+     * @param exact if solution is optimal
+     */
+    public void storeSolution(Object solution, boolean exact) {
+	if (solutionCache == null)
+	    return;
+	FVSProblem problem = (FVSProblem)prepareLookup();
+	CSRGraph kernel = problem.kernel;
+	int n = kernel.getVertexNr();
+	if (n == 0)
+	    return;
+	boolean[] kept = new boolean[n];
+	int count = 0;
+	double weight = 0;
+	for (int v = 0; v < n; v++) {
+	    kept[v] = true;
+	    Iterator it = kernel.getIDs(v).iterator();
+	    while (it.hasNext() && kept[v])
+		kept[v] = !((Set)solution).contains(it.next());
+	    if (!kept[v]) {
+		count++;
+		weight += kernel.getWeight(v);
+	    }
+	}
+	StronglyConnectedComponents scc = new StronglyConnectedComponents(kernel);
+	scc.compute(kept, null);
+	if (scc.getCyclicComponents().length > 0)
+	    return;
+	CanonicalGraph form = problem.getKernelForm();
+	int[] labels = new int[count];
+	count = 0;
+	for (int v = 0; v < n; v++)
+	    if (!kept[v])
+		labels[count++] = form.getLabel(v);
+	solutionCache.put(form, labels, weight, exact);
+    }
+
+    private static CanonicalGraph createCanonicalGraph(CSRGraph kernel) {
+	double[] weight = new double[kernel.getVertexNr()];
+	for (int v = 0; v < weight.length; v++)
+	    weight[v] = kernel.getWeight(v);
+	int[] source = new int[kernel.getEdgeNr()], target = new int[kernel.getEdgeNr()];
+	for (int e = 0; e < source.length; e++) {
+	    source[e] = kernel.getSource(e);
+	    target[e] = kernel.getTarget(e);
+	}
+	return new CanonicalGraph(weight, source, target, null);
+    }
+
     /**
      * informs the GRASP-problem of a selection
      * @param obj is one of the elements from getGreedyObjects
@@ -54,40 +250,97 @@ public class FVSProblem implements GRASPProblem {
     }
 
     /**
-     * performs local optimization
+     * looks for the strongly connected components of the graph whenever it has lost an eighth
+     * of its vertices since the last look, so the total work stays linear in the graph size;
+     * small components are solved exactly, the others are reduced and become parts
+     * @return the parts, or null if the graph is still a single component
      */
-    public void optimizeLocal() {
-	int reduced = 0;
-	// try to remove redundant vertices
-	HashSet cloneFVS = (HashSet)fvs.clone();
-	Iterator it = fvs.iterator();
-	while (it.hasNext()) {
-	    Object vertexID = it.next();
-	    // check if vertex is redundant
-	    cloneFVS.remove(vertexID);
-	    if (!isFVS(cloneFVS))
-		cloneFVS.add(vertexID);
-	    else
-		reduced++;
+    public GRASPProblem[] split() {
+	int size = graph.vertexSet().size();
+	if (size == 0 || size > splitSize)
+	    return null;
+	splitSize = size - size / 8 - 1;
+	Object[][] components = ComponentSolver.findCyclicComponents(graph);
+	if (components.length == 1 && components[0].length > ExactFeedbackSets.FVS_PART_LIMIT)
+	    return null;
+	ArrayList parts = new ArrayList();
+	for (int c = 0; c < components.length; c++)
+	    if (components[c].length > ExactFeedbackSets.FVS_PART_LIMIT || !solveExactly(components[c])) {
+		// edges to other components are gone, so the component may reduce further
+		FeedbackVertexGraph part = graph.createSubgraph(components[c]);
+		reducer.reduce(part, fvs);
+		if (!part.vertexSet().isEmpty())
+		    parts.add(new FVSProblem(part, reducer));
+	    }
+	return (GRASPProblem[])parts.toArray(new GRASPProblem[parts.size()]);
+    }
+
+    /**
+     * adds the IDs of a minimum FVS of the component to the FVS
+     * @return false if the component has no FVS
+     */
+    private boolean solveExactly(Object[] component) {
+	HashMap index = new HashMap();
+	for (int i = 0; i < component.length; i++)
+	    index.put(component[i], new Integer(i));
+	int[] successors = new int[component.length];
+	double[] weight = new double[component.length];
+	for (int i = 0; i < component.length; i++) {
+	    weight[i] = ((FeedbackVertex)component[i]).getWeight();
+	    Iterator it = graph.outgoingEdgesOf(component[i]).iterator();
+	    while (it.hasNext()) {
+		Integer target = (Integer)index.get(((Edge)it.next()).getTarget());
+		if (target != null)
+		    successors[i] |= 1 << target.intValue();
+	    }
 	}
-	fvs = cloneFVS;
-	//System.out.print(reduced);
+	int set = ExactFeedbackSets.minimumFVS(successors, weight);
+	if (set == -1)
+	    return false;
+	for (int i = 0; i < component.length; i++)
+	    if ((set & (1 << i)) != 0)
+		fvs.addAll(((FeedbackVertex)component[i]).getID());
+	return true;
+    }
+
+    public void addPartSolution(Object solution) {
+	fvs.addAll((Set)solution);
     }
 
     /**
-     * @return true if fvs is a Feedback Vertex Set
-     * @param fvs set of vertex IDs
+     * performs local optimization: removes redundant IDs from the FVS
      */
-    protected boolean isFVS(Set fvs) {
-	FeedbackVertexGraph g = (FeedbackVertexGraph)originalGraph.clone();
-	// remove vertices in fvs
-	Iterator it = fvs.iterator();
-	while (it.hasNext()) {
-	    g.removeVertex(g.getVertex(it.next()));
+    public void optimizeLocal() {
+	// done in place, so the changes get logged
+	getRelinker().removeRedundant(fvs);
+    }
+
+    private FVSPathRelinker getRelinker() {
+	if (relinker == null)
+	    relinker = new FVSPathRelinker(getOriginalCSR());
+	return relinker;
+    }
+
+    private CSRGraph getOriginalCSR() {
+	synchronized (originalCSR) {
+	    if (originalCSR[0] == null)
+		originalCSR[0] = new CSRGraph(originalGraph);
+	    return originalCSR[0];
 	}
-	// check if cycle-free
-	reducer.reduceBy0(g);
-	return g.vertexSet().isEmpty();
+    }
+
+    /**
+     * @return the number of IDs contained in only one of the solutions
+     */
+    public double distance(Object solution1, Object solution2) {
+	return ElitePool.symmetricDifference((Set)solution1, (Set)solution2);
+    }
+
+    /**
+     * @return the best FVS found on the path between both FVS, or null
+     */
+    public Object relink(Object from, Object to) {
+	return getRelinker().relink((Set)from, (Set)to);
     }
 
     /**
@@ -121,10 +374,27 @@ public class FVSProblem implements GRASPProblem {
     }
 
     /**
-     * @return the solution found
+     * @return a copy of the solution found
      */
     public Object getSolution() {
-	return fvs;
+	return new HashSet(fvs);
+    }
+
+    /**
+     * reduces the graph and starts recording changes if not done yet
+     * @return the current position of the undo log
+     */
+    public int mark() {
+	reduce();
+	return graph.mark();
+    }
+
+    /**
+     * rewinds all changes recorded since mark was obtained
+     */
+    public void undo(int mark) {
+	graph.undo(mark);
+	splitSize = Integer.MAX_VALUE;
     }
 
     /**
@@ -141,7 +411,13 @@ public class FVSProblem implements GRASPProblem {
 	clone.originalGraph = originalGraph;
 	clone.graph = (FeedbackVertexGraph)originalGraph.clone();
 	clone.reducer = reducer;
-	clone.fvs = (HashSet)fvs.clone();
+	clone.originalCSR = originalCSR;
+	clone.relinker = null;
+	clone.splitSize = Integer.MAX_VALUE;
+	clone.kernel = null;
+	clone.kernelForm = null;
+	clone.fvs = new LoggedSet(clone.graph);
+	clone.fvs.addAll(fvs);
 	return clone;
     }
 }
@@ -5,32 +5,76 @@ import java.util.*;
 import org._3pq.jgrapht.*;
 import org._3pq.jgrapht.graph.*;
 import org._3pq.jgrapht.edge.*;
-import org._3pq.jgrapht.traverse.*;
 
 import util.Log;
 
-public class FeedbackSets {
+import grasp.*;
 
-    protected class GreedyEdge extends DirectedWeightedEdge {
-	private Set id;
-	private DirectedGraph graph;
+public class FeedbackSets implements Cloneable {
+
+    /**
+     * edge of a GreedyGraph, standing for one or more original edges whose IDs are 0..idNr-1
+     * the IDs of an edge form a class in the union-find structure of its graph
+     */
+    protected class GreedyEdge extends DirectedWeightedEdge implements GreedyObject {
+	// any ID of the edge; the others are found via its class
+	private int id;
+	private GreedyGraph graph;
+	// vertex indices of the endpoints in the graph
+	private int sourceIndex, targetIndex;
 	
 	public GreedyEdge(Object sourceVertex, Object targetVertex, double weight,
-			  Set id, DirectedGraph g) {
+			  int id, GreedyGraph g) {
+	    this(sourceVertex, targetVertex, g.indexOf(sourceVertex), g.indexOf(targetVertex),
+		 weight, id, g);
+	}
+
+	private GreedyEdge(Object sourceVertex, Object targetVertex, int sourceIndex, int targetIndex,
+			   double weight, int id, GreedyGraph g) {
 	    super(sourceVertex, targetVertex, weight);
+	    this.sourceIndex = sourceIndex;
+	    this.targetIndex = targetIndex;
 	    this.id = id;
 	    this.graph = g;
 	}
 
+	/**
+	 * @return the Integer IDs of the edge
+	 */
 	public Set getID() {
+	    Set ids = new HashSet();
+	    addIDsTo(ids);
+	    return ids;
+	}
+
+	/**
+	 * @return one of the IDs, identifying the ID class of the edge
+	 */
+	public int getRepresentativeID() {
 	    return id;
 	}
 
+	public void addIDsTo(Set ids) {
+	    int i = id;
+	    do {
+		ids.add(graph.getIDObject(i));
+		i = graph.nextID[i];
+	    } while (i != id);
+	}
+
+	public void removeIDsFrom(Set ids) {
+	    int i = id;
+	    do {
+		ids.remove(graph.getIDObject(i));
+		i = graph.nextID[i];
+	    } while (i != id);
+	}
+
 	public void mergeWithEdge(GreedyEdge edge) {
 	    if (edge.getSource() != getSource() || edge.getTarget() != getTarget())
 		throw new IllegalArgumentException("attempting to merge with different edge");
-	    id.addAll(edge.getID());
-	    setWeight(getWeight() + edge.getWeight());
+	    graph.union(id, edge.id, this);
+	    graph.setWeight(this, getWeight() + edge.getWeight());
 	}
 
 	public double getGreedyWeight() {
@@ -39,69 +83,265 @@ public class FeedbackSets {
 	    return Math.sqrt(inDegree * outDegree) / getWeight();
 	}
 
-	public GreedyEdge clone(DirectedGraph newGraph) {
-	    Set cloneID = new HashSet();
-	    cloneID.addAll(id);
-	    return new GreedyEdge(getSource(), getTarget(), getWeight(), cloneID, newGraph);
+	/**
+	 * @param newGraph a clone or part of the graph of this edge
+	 */
+	public GreedyEdge clone(GreedyGraph newGraph) {
+	    return new GreedyEdge(getSource(), getTarget(), sourceIndex, targetIndex,
+				  getWeight(), id, newGraph);
 	}
 
 	public String toString() {
-	    return super.toString() + ":" + getWeight() + "=" + id;
+	    return super.toString() + ":" + getWeight() + "=" + getID();
 	}
     }
 
     protected class GreedyGraph extends SimpleDirectedWeightedGraph {
-	
-	// maps IDs to edges
-	private HashMap idEdges = new HashMap();
+
+	// union-find over the IDs; the members of each class are linked in a circular list
+	private int[] parent, nextID;
+	// edge of each class at the index of its root, null if the class has no edge in the graph
+	private GreedyEdge[] classEdge;
+	// Integer objects of the IDs, shared by all clones
+	private Integer[] idObjects;
+	// index of every vertex ever added, shared by all clones and parts
+	private HashMap vertexIndex;
+	private ArrayList indexedVertices;
+	// scratch space for getFESWeight
+	private int[] counted;
+	private int countStamp = 0;
+	// undo log, shared with the parts split off while recording; null if not recording
+	private ArrayList trail = null;
+
+	/**
+	 * @param idNr edges IDs will be 0..idNr-1
+	 */
+	public GreedyGraph(int idNr) {
+	    parent = new int[idNr];
+	    nextID = new int[idNr];
+	    classEdge = new GreedyEdge[idNr];
+	    idObjects = new Integer[idNr];
+	    for (int i = 0; i < idNr; i++) {
+		parent[i] = nextID[i] = i;
+		idObjects[i] = new Integer(i);
+	    }
+	    vertexIndex = new HashMap();
+	    indexedVertices = new ArrayList();
+	}
+
+	private GreedyGraph(GreedyGraph g) {
+	    parent = (int[])g.parent.clone();
+	    nextID = (int[])g.nextID.clone();
+	    classEdge = new GreedyEdge[parent.length];
+	    idObjects = g.idObjects;
+	    vertexIndex = g.vertexIndex;
+	    indexedVertices = g.indexedVertices;
+	}
+
+	/**
+	 * @return an empty part of this graph, sharing the ID classes with it and its other
+	 * parts; see split
+	 */
+	private GreedyGraph createPart() {
+	    GreedyGraph part = new GreedyGraph(0);
+	    part.parent = parent;
+	    part.nextID = nextID;
+	    part.classEdge = classEdge;
+	    part.idObjects = idObjects;
+	    part.vertexIndex = vertexIndex;
+	    part.indexedVertices = indexedVertices;
+	    part.trail = trail;
+	    return part;
+	}
+
+	public Integer getIDObject(int id) {
+	    return idObjects[id];
+	}
+
+	/**
+	 * gives vertex an index if it has none yet; indices are never taken back
+	 */
+	public boolean addVertex(final Object vertex) {
+	    if (!vertexIndex.containsKey(vertex)) {
+		vertexIndex.put(vertex, new Integer(indexedVertices.size()));
+		indexedVertices.add(vertex);
+	    }
+	    if (!super.addVertex(vertex))
+		return false;
+	    // its edges are gone when this is undone
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    GreedyGraph.super.removeVertex(vertex);
+			}
+		    });
+	    return true;
+	}
+
+	public boolean removeVertex(final Object vertex) {
+	    // removes the edges first, which log themselves
+	    if (!super.removeVertex(vertex))
+		return false;
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    GreedyGraph.super.addVertex(vertex);
+			}
+		    });
+	    return true;
+	}
+
+	/**
+	 * @return the index of vertex, which is the same in all clones and parts
+	 */
+	public int indexOf(Object vertex) {
+	    Integer index = (Integer)vertexIndex.get(vertex);
+	    if (index == null)
+		throw new IllegalArgumentException("no such vertex " + vertex);
+	    return index.intValue();
+	}
+
+	public Object getIndexedVertex(int index) {
+	    return indexedVertices.get(index);
+	}
+
+	/**
+	 * @return an upper bound on the vertex indices
+	 */
+	public int getIndexedVertexNr() {
+	    return indexedVertices.size();
+	}
+
+	/**
+	 * starts recording changes, including those of parts split off later, if not done yet
+	 * @return the current position of the undo log
+	 */
+	public int mark() {
+	    if (trail == null)
+		trail = new ArrayList();
+	    return trail.size();
+	}
+
+	/**
+	 * rewinds all changes recorded since mark was obtained; parts split off since then
+	 * must not be used afterwards
+	 */
+	public void undo(int mark) {
+	    while (trail.size() > mark)
+		((FeedbackVertexGraph.UndoEntry)trail.remove(trail.size() - 1)).undo();
+	}
+
+	private void set(final int[] array, final int index, int value) {
+	    final int oldValue = array[index];
+	    array[index] = value;
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    array[index] = oldValue;
+			}
+		    });
+	}
+
+	private void setClassEdge(final int root, GreedyEdge edge) {
+	    final GreedyEdge oldEdge = classEdge[root];
+	    classEdge[root] = edge;
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    classEdge[root] = oldEdge;
+			}
+		    });
+	}
+
+	private void setWeight(final GreedyEdge edge, double weight) {
+	    final double oldWeight = edge.getWeight();
+	    edge.setWeight(weight);
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    edge.setWeight(oldWeight);
+			}
+		    });
+	}
+
+	/**
+	 * @return the root of the class of id, halving the path on the way unless recording,
+	 * as undoing a union would not restore halved paths
+	 */
+	private int find(int id) {
+	    if (trail != null) {
+		while (parent[id] != id)
+		    id = parent[id];
+		return id;
+	    }
+	    while (parent[id] != id) {
+		parent[id] = parent[parent[id]];
+		id = parent[id];
+	    }
+	    return id;
+	}
+
+	/**
+	 * merges the classes of both IDs into one, which then belongs to edge
+	 */
+	private void union(int id1, int id2, GreedyEdge edge) {
+	    int root1 = find(id1), root2 = find(id2);
+	    if (root1 != root2) {
+		set(parent, root2, root1);
+		setClassEdge(root2, null);
+		// concatenate member lists
+		int next = nextID[root1];
+		set(nextID, root1, nextID[root2]);
+		set(nextID, root2, next);
+	    }
+	    setClassEdge(root1, edge);
+	}
 
 	public boolean removeEdge(Edge edge) {
 	    if (!super.removeEdge(edge))
 		return false;
-	    // remove IDs from idEdges
-	    Iterator it = ((GreedyEdge)edge).getID().iterator();
-	    while (it.hasNext())
-		idEdges.remove(it.next());
+	    final Edge removed = edge;
+	    if (trail != null)
+		trail.add(new FeedbackVertexGraph.UndoEntry() {
+			public void undo() {
+			    GreedyGraph.super.addEdge(removed);
+			}
+		    });
+	    // the class stays intact, so the IDs can be given to a new edge
+	    setClassEdge(find(((GreedyEdge)edge).id), null);
 	    return true;
 	}
 
 	public boolean addEdge(Edge edge) {
 	    // make sure the graph contains no edges with same ID
-	    Iterator it = ((GreedyEdge)edge).getID().iterator();
-	    while (it.hasNext()) {
-		Object id = it.next();
-		if (idEdges.containsKey(id))
-		    throw new IllegalArgumentException("Graph already contains edge with id=" +  id);
-	    }
+	    int root = find(((GreedyEdge)edge).id);
+	    if (classEdge[root] != null)
+		throw new IllegalArgumentException("Graph already contains edge with id=" + ((GreedyEdge)edge).id);
 	    // already contains edge from source to target?
 	    GreedyEdge oldEdge = (GreedyEdge)getEdge(edge.getSource(), edge.getTarget());
-	    GreedyEdge newEdge;
-	    if (oldEdge != null) {
+	    if (oldEdge != null)
 		oldEdge.mergeWithEdge((GreedyEdge)edge);
-		newEdge = oldEdge;
-	    }
 	    else {
 		if (!super.addEdge(edge))
 		    return false;
-		newEdge = (GreedyEdge)edge;
+		final Edge added = edge;
+		if (trail != null)
+		    trail.add(new FeedbackVertexGraph.UndoEntry() {
+			    public void undo() {
+				GreedyGraph.super.removeEdge(added);
+			    }
+			});
+		setClassEdge(root, (GreedyEdge)edge);
 	    }
-	    // update idEdges
-	    it = ((GreedyEdge)edge).getID().iterator();
-	    while (it.hasNext())
-		idEdges.put(it.next(), newEdge);
 	    return true;
 	}
 
+	/**
+	 * adds an edge carrying id and all IDs in its class
+	 */
 	public Edge addEdge(Object sourceVertex, Object targetVertex,
 			    double weight, int id) {
-	    Set idSet = new HashSet();
-	    idSet.add(new Integer(id));
-	    return addEdge(sourceVertex, targetVertex, weight, idSet);
-	}
-
-	public Edge addEdge(Object sourceVertex, Object targetVertex,
-			    double weight, Set idSet) {
-	    GreedyEdge edge = new GreedyEdge(sourceVertex, targetVertex, weight, idSet, this);
+	    GreedyEdge edge = new GreedyEdge(sourceVertex, targetVertex, weight, id, this);
 	    addEdge(edge);
 	    return edge;
 	}
@@ -113,12 +353,19 @@ public class FeedbackSets {
 	    return addEdge(baseEdge.getSource(), baseEdge.getTarget(), weight, id);
 	}
 
+	public GreedyEdge getEdge(int id) {
+	    return classEdge[find(id)];
+	}
+
 	public GreedyEdge getEdge(Integer id) {
-	    return (GreedyEdge)idEdges.get(id);
+	    return getEdge(id.intValue());
 	}
 
+	/**
+	 * @return the edges of the IDs, in the order of idSet
+	 */
 	public Set getEdges(Set idSet) {
-	    Set edges = new HashSet();
+	    Set edges = new LinkedHashSet();
 	    Iterator it = idSet.iterator();
 	    while (it.hasNext())
 		edges.add(getEdge((Integer)it.next()));
@@ -126,7 +373,7 @@ public class FeedbackSets {
 	}
 
 	public Object clone() {
-	    GreedyGraph clone = new GreedyGraph();
+	    GreedyGraph clone = new GreedyGraph(this);
 	    Iterator it = vertexSet().iterator();
 	    while (it.hasNext())
 		clone.addVertex(it.next());
@@ -136,6 +383,38 @@ public class FeedbackSets {
 	    return clone;
 	}
 
+	/**
+	 * splits the graph into its cyclic strongly connected components; the parts share
+	 * the ID classes with this graph, which must not be used afterwards
+	 * @return the parts, largest first, or null if there is only one
+	 */
+	public GreedyGraph[] split() {
+	    CSRGraph graph = new CSRGraph(this);
+	    StronglyConnectedComponents scc = new StronglyConnectedComponents(graph);
+	    int[] cyclic = scc.getCyclicComponents();
+	    if (cyclic.length == 1)
+		return null;
+	    GreedyGraph[] parts = new GreedyGraph[cyclic.length];
+	    for (int i = 0; i < cyclic.length; i++) {
+		int c = cyclic[i];
+		parts[i] = createPart();
+		for (int j = 0; j < scc.getSize(c); j++)
+		    parts[i].addVertex(graph.getVertex(scc.getVertex(c, j)));
+		for (int j = 0; j < scc.getSize(c); j++) {
+		    Iterator it = outgoingEdgesOf(graph.getVertex(scc.getVertex(c, j))).iterator();
+		    while (it.hasNext()) {
+			GreedyEdge edge = (GreedyEdge)it.next();
+			if (scc.getComponent(graph.getIndex(edge.getTarget())) == c) {
+			    // hand the ID class over to the copy
+			    setClassEdge(find(edge.id), null);
+			    parts[i].addEdge(edge.clone(parts[i]));
+			}
+		    }
+		}
+	    }
+	    return parts;
+	}
+
 	public int degreeOf(Object vertex) {
 	    return inDegreeOf(vertex) + outDegreeOf(vertex);
 	}
@@ -146,14 +425,16 @@ public class FeedbackSets {
 	 */
 	public double getFESWeight(Set fes) {
 	    // make sure edges with multiple IDs get counted only once
-	    Set counted = new HashSet();
+	    if (counted == null)
+		counted = new int[parent.length];
+	    countStamp++;
 	    double weight = 0;
 	    Iterator it = fes.iterator();
 	    while (it.hasNext()) {
-		GreedyEdge edge = getEdge((Integer)it.next());
-		if (!counted.contains(edge)) {
-		    weight += edge.getWeight();
-		    counted.add(edge);
+		int root = find(((Integer)it.next()).intValue());
+		if (counted[root] != countStamp) {
+		    weight += classEdge[root].getWeight();
+		    counted[root] = countStamp;
 		}
 	    }
 	    return weight;
@@ -161,57 +442,239 @@ public class FeedbackSets {
    }
 
     protected int iterations;
-    protected double rclFactor;
+    protected RCLConstructor rclConstructor;
+    // path relinking, disabled if eliteSize == 0
+    protected int eliteSize = 0;
+    protected double eliteDistance = 1;
+    // finish strongly connected components separately, small ones exactly
+    protected boolean splitting = true;
+    // reduced graphs up to exactLimit vertices are solved by branch and bound
+    protected int exactLimit = 30;
+    private static final int BRANCH_NODE_LIMIT = 2000;
+    // start the searches from the FES of EadesLinSmyth
+    protected boolean orderingSeed = false;
+    // caches FES of reduced graphs, null disables caching
+    private SolutionCache solutionCache = null;
+    // seeds the searches of findGreedyFeedbackEdgeSet(g); Random is thread-safe
+    private Random rand = new Random();
+    // add the statistics of a reactive rcl constructor of each call to rclConstructor
+    private boolean carryStatistics = false;
 
     public FeedbackSets() {
-	this(100, 0.8);
+	this(100);
     }
 
+    /**
+     * uses a ReactiveRCLConstructor, which tunes the rcl percentage during each call
+     */
     public FeedbackSets(int iterations) {
-	this(iterations, 0.8);
+	this(iterations, new ReactiveRCLConstructor());
     }
 
     public FeedbackSets(int iterations, double rclFactor) {
+	this(iterations, new WeightPercentageRCLConstructor(rclFactor));
+    }
+
+    public FeedbackSets(int iterations, RCLConstructor rclConstructor) {
 	this.iterations = iterations;
-	this.rclFactor = rclFactor;
+	this.rclConstructor = rclConstructor;
     }
 
     /**
-     * finds FES for g using GRASP
+     * enables path relinking: each new FES is relinked with a random FES from a pool of elite FES
+     * @param eliteSize size of the elite pool, 0 disables path relinking
+     * @param minDistance FES closer than this (number of differing edge IDs) are considered similar
+     */
+    public void setPathRelinking(int eliteSize, double minDistance) {
+	if (eliteSize < 0)
+	    throw new IllegalArgumentException("eliteSize = " + eliteSize);
+	this.eliteSize = eliteSize;
+	this.eliteDistance = minDistance;
+    }
+
+    /**
+     * enables or disables splitting the graph into its strongly connected components
+     * during construction; enabled by default
+     */
+    public void setSplitting(boolean splitting) {
+	this.splitting = splitting;
+    }
+
+    /**
+     * @param exactLimit graphs with up to this many vertices after reduction are solved
+     * exactly by branch and bound instead of GRASP, 0 disables exact solving
+     */
+    public void setExactLimit(int exactLimit) {
+	this.exactLimit = exactLimit;
+    }
+
+    /**
+     * @param carryStatistics if true, the statistics a reactive rcl constructor gathers during
+     * a call are kept for the following calls; otherwise every call starts from the initial
+     * probabilities, so its result does not depend on other calls; disabled by default
+     */
+    public void setCarryStatistics(boolean carryStatistics) {
+	this.carryStatistics = carryStatistics;
+    }
+
+    /**
+     * @return a FeedbackSets with the same settings and solution cache, whose rcl constructor
+     * starts from the current state of this one but gathers its statistics apart from it
+     */
+    public FeedbackSets copy() {
+	FeedbackSets copy;
+	try {
+	    copy = (FeedbackSets)super.clone();
+	} catch (CloneNotSupportedException e) {
+	    throw new RuntimeException("FeedbackSets not cloneable");
+	}
+	if (rclConstructor instanceof ReactiveRCLConstructor)
+	    synchronized (rclConstructor) {
+		copy.rclConstructor = ((ReactiveRCLConstructor)rclConstructor).copy();
+	    }
+	copy.carryStatistics = false;
+	return copy;
+    }
+
+    /**
+     * @param orderingSeed if true, GRASP starts with the FES found by EadesLinSmyth after local
+     * search as best and elite solution, so it never returns anything worse
+     */
+    public void setOrderingSeed(boolean orderingSeed) {
+	this.orderingSeed = orderingSeed;
+    }
+
+    /**
+     * @param solutionCache caches the FES of reduced graphs, keyed by their canonical form with
+     * edge weights, so graphs reducing to a kernel seen before are not solved again;
+     * null disables caching
+     */
+    public void setSolutionCache(SolutionCache solutionCache) {
+	this.solutionCache = solutionCache;
+    }
+
+    /**
+     * fast mode for large graphs: finds a FES in O(V+E) with the ordering heuristic of
+     * Eades, Lin and Smyth, ignoring edge weights; no GRASP and no local search is done
+     * @param g may contain parallel edges; loops are always part of the FES
+     */
+    public Set findOrderingFeedbackEdgeSet(DirectedGraph g) {
+	return EadesLinSmyth.findFeedbackEdgeSet(g);
+    }
+
+    /**
+     * finds FES for g using GRASP on the calling thread
      * @param g can be weighted but must be loop-free, if weighted all weights must be > 0
      */
     public Set findGreedyFeedbackEdgeSet(DirectedGraph g) {
+	return findGreedyFeedbackEdgeSet(g, 1, rand.nextLong());
+    }
+
+    /**
+     * finds FES for g using GRASP, performing the iterations on several threads;
+     * each worker operates on its own copy of the reduced graph and draws from its own
+     * random stream, split off from seed
+     * the result is reproducible for a given seed and number of threads, unless statistics
+     * are carried from other calls
+     * @param g can be weighted but must be loop-free, if weighted all weights must be > 0
+     * @param threads number of worker threads
+     * @param seed seed from which the random streams of the workers are derived
+     */
+    public Set findGreedyFeedbackEdgeSet(DirectedGraph g, int threads, long seed) {
+	if (threads < 1)
+	    throw new IllegalArgumentException("threads = " + threads);
+	threads = Math.max(1, Math.min(threads, iterations));
 
 	// create ids for edges
 	DirectedEdge[] edgeIndex = (DirectedEdge[])g.edgeSet().toArray(new DirectedEdge[0]);
 
 	// produce copy with GreedyEdges
-	GreedyGraph idGraph = new GreedyGraph();
+	GreedyGraph idGraph = new GreedyGraph(edgeIndex.length);
 	Iterator it = g.vertexSet().iterator();
 	while (it.hasNext())
 	    idGraph.addVertex(it.next());
 	for (int i = 0; i < edgeIndex.length; i++)
 	    idGraph.addEdge(edgeIndex[i], i);
 
+	// all searches start from the same state, which other calls cannot change
+	RCLConstructor template = rclConstructor;
+	if (template instanceof ReactiveRCLConstructor)
+	    synchronized (rclConstructor) {
+		template = ((ReactiveRCLConstructor)rclConstructor).copy();
+	    }
+	Search[] searches = new Search[threads];
+	for (int w = 0; w < threads; w++)
+	    searches[w] = new Search(new Random(GRASPSolver.streamSeed(seed, w)), template);
 	// reduce once before iterations
 	Set mainFES = new HashSet();
-	reduce(idGraph, mainFES);
+	searches[0].reduce(idGraph, mainFES);
+	// seen before?
+	Set kernelFES = null;
+	GreedyEdge[] kernelEdges = null;
+	CanonicalGraph kernel = null;
+	if (solutionCache != null && !idGraph.edgeSet().isEmpty()) {
+	    kernelEdges = (GreedyEdge[])idGraph.edgeSet().toArray(new GreedyEdge[0]);
+	    kernel = createCanonicalGraph(idGraph, kernelEdges);
+	    // only an optimal FES saves the search
+	    SolutionCache.Entry cached = solutionCache.get(kernel);
+	    if (cached != null && cached.exact) {
+		kernelFES = getCachedFES(kernel, kernelEdges, cached);
+		kernel = null;
+	    }
+	}
+	// small enough to be solved exactly?
+	boolean exact = false;
+	if (kernelFES == null && !idGraph.edgeSet().isEmpty() && idGraph.vertexSet().size() <= exactLimit) {
+	    kernelFES = searches[0].branchAndBound(idGraph);
+	    exact = kernelFES != null;
+	}
 	// is graph already empty?
-	if (!idGraph.edgeSet().isEmpty()) {
-	    // iterate
-	    Set minFES = null;
-	    double minWeight = 0;
-	    for (int i = 0; i < iterations; i++) {
-		Set newFES = iterateFES(idGraph);
-		double newWeight = idGraph.getFESWeight(newFES);
-		// Log.debug("FESweight=" + newWeight);
-		// better result than old one?
-		if (minFES == null || newWeight < minWeight) {
-		    minFES = newFES;
-		    minWeight = newWeight;
-		}
+	if (kernelFES == null && !idGraph.edgeSet().isEmpty()) {
+	    if (orderingSeed) {
+		Set seedFES = new HashSet();
+		it = EadesLinSmyth.findFeedbackEdgeSet(idGraph).iterator();
+		while (it.hasNext())
+		    ((GreedyEdge)it.next()).addIDsTo(seedFES);
+		searches[0].localSearch(idGraph, seedFES);
+		double seedWeight = idGraph.getFESWeight(seedFES);
+		for (int w = 0; w < threads; w++)
+		    searches[w].seed(seedFES, seedWeight);
+	    }
+	    Worker[] workers = new Worker[threads];
+	    // clone on the calling thread, so workers never share a graph
+	    for (int w = 0; w < threads; w++)
+		workers[w] = new Worker(searches[w], w == 0 ? idGraph : (GreedyGraph)idGraph.clone(),
+					w, threads);
+	    if (threads == 1)
+		workers[0].run();
+	    else {
+		for (int w = 0; w < threads; w++)
+		    workers[w].start();
+		for (int w = 0; w < threads; w++)
+		    try {
+			workers[w].join();
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for FES workers");
+		    }
 	    }
-	    mainFES.addAll(minFES);
+	    for (int w = 0; w < threads; w++)
+		if (workers[w].getFailure() != null)
+		    GRASPSolver.rethrow(workers[w].getFailure());
+	    // merge in worker order, to stay reproducible
+	    Search best = null;
+	    for (int w = 0; w < threads; w++) {
+		if (carryStatistics)
+		    searches[w].mergeConstructor();
+		if (searches[w].betterThan(best))
+		    best = searches[w];
+	    }
+	    kernelFES = best.getBestFES();
+	}
+	if (kernelFES != null) {
+	    if (kernel != null)
+		kernelFES = cacheFES(kernel, kernelEdges, kernelFES, exact);
+	    mainFES.addAll(kernelFES);
 	}
 
 	// convert back
@@ -223,84 +686,451 @@ public class FeedbackSets {
 	return returnFES;
     }
 
-    private Random rand = new Random();
     /**
-     * @return FES from an already reduced graph
+     * @return the canonical form of g, with edge weights; edges are indexed as in edges
+     */
+    private static CanonicalGraph createCanonicalGraph(GreedyGraph g, GreedyEdge[] edges) {
+	Object[] vertices = g.vertexSet().toArray();
+	HashMap index = new HashMap();
+	for (int v = 0; v < vertices.length; v++)
+	    index.put(vertices[v], new Integer(v));
+	int[] source = new int[edges.length], target = new int[edges.length];
+	double[] weight = new double[edges.length];
+	for (int e = 0; e < edges.length; e++) {
+	    source[e] = ((Integer)index.get(edges[e].getSource())).intValue();
+	    target[e] = ((Integer)index.get(edges[e].getTarget())).intValue();
+	    weight[e] = edges[e].getWeight();
+	}
+	return new CanonicalGraph(new double[vertices.length], source, target, weight);
+    }
+
+    /**
+     * @return the IDs of the kernel edges of a cached FES
      */
-    protected Set iterateFES(GreedyGraph g) {
-	// ensure that g is not modified
-	GreedyGraph itGraph = (GreedyGraph)g.clone();
+    private static Set getCachedFES(CanonicalGraph kernel, GreedyEdge[] edges, SolutionCache.Entry entry) {
 	Set fes = new HashSet();
-	while (!itGraph.edgeSet().isEmpty()) {
-	    // randomly select edge to remove from rcl
-	    GreedyEdge[] rcl = (GreedyEdge[])getRCL(itGraph).toArray(new GreedyEdge[0]);
-	    GreedyEdge edge = rcl[rand.nextInt(rcl.length)];
-	    // remove and reduce
-	    itGraph.removeEdge(edge);
-	    fes.addAll(edge.getID());
-	    reduce(itGraph, fes);
-	}
-	// remove redundant edges from fes
-	localSearch(g, fes);
+	for (int i = 0; i < entry.solution.length; i++)
+	    edges[kernel.getEdge(entry.solution[i])].addIDsTo(fes);
 	return fes;
     }
 
     /**
-     * removes all vertices that have zero in- or out-degree
+     * caches the positions of the kernel edges whose IDs are in fes
+     * @param exact if fes is optimal
+     * @return the lighter of fes and the FES the cache keeps
      */
-    protected void reduce0(GreedyGraph g) {
-	LinkedList removals = new LinkedList();
-	Iterator it = g.vertexSet().iterator();
-	// find starting set for removals
-	while (it.hasNext()) {
-	    Object vertex = it.next();
-	    if (g.inDegreeOf(vertex) == 0 || g.outDegreeOf(vertex) == 0)
-		removals.add(vertex);
-	}
-	// remove..
-	while (!removals.isEmpty()) {
-	    Object vertex = removals.removeFirst();
-	    // update adjecent vertices and remove
-	    // update predecessors
-	    it = g.incomingEdgesOf(vertex).iterator();
-	    while (it.hasNext()) {
-		Object pre = ((DirectedEdge)it.next()).getSource();
-		// if pre newly becomes subject of removal, add to list
-		if (g.outDegreeOf(pre) == 1 && g.inDegreeOf(pre) > 0)
-		    removals.add(pre);
+    private Set cacheFES(CanonicalGraph kernel, GreedyEdge[] edges, Set fes, boolean exact) {
+	int count = 0;
+	double weight = 0;
+	boolean[] inFES = new boolean[edges.length];
+	for (int e = 0; e < edges.length; e++)
+	    if (inFES[e] = fes.contains(new Integer(edges[e].getRepresentativeID()))) {
+		count++;
+		weight += edges[e].getWeight();
 	    }
-	    // update successors
-	    it = g.outgoingEdgesOf(vertex).iterator();
-	    while (it.hasNext()) {
-		Object succ = ((DirectedEdge)it.next()).getTarget();
-		// if succ newly becomes subject of removal, add to list
-		if (g.inDegreeOf(succ) == 1 && g.outDegreeOf(succ) > 0)
-		    removals.add(succ);
+	int[] positions = new int[count];
+	count = 0;
+	for (int e = 0; e < edges.length; e++)
+	    if (inFES[e])
+		positions[count++] = kernel.getPosition(e);
+	if (solutionCache.put(kernel, positions, weight, exact))
+	    return fes;
+	SolutionCache.Entry entry = solutionCache.get(kernel);
+	if (entry != null && entry.weight < weight)
+	    return getCachedFES(kernel, edges, entry);
+	return fes;
+    }
+
+    /**
+     * performs every step-th iteration of a search on its own graph
+     */
+    private class Worker extends Thread {
+
+	private Search search;
+	private GreedyGraph graph;
+	private int first, step;
+	private Throwable failure = null;
+
+	public Worker(Search search, GreedyGraph graph, int first, int step) {
+	    this.search = search;
+	    this.graph = graph;
+	    this.first = first;
+	    this.step = step;
+	}
+
+	public void run() {
+	    try {
+		search.iterate(graph, first, step);
+	    } catch (Throwable e) {
+		failure = e;
 	    }
-	    g.removeVertex(vertex);
+	}
+
+	public Throwable getFailure() {
+	    return failure;
 	}
     }
 
     /**
-     * eliminate vertices with inDegree == outDegree == 1
-     * @return true if graph again contains zero-Vertices
+     * state of one search: random stream, rcl constructor, elite pool, scratch space and best FES
+     * a search is confined to one thread, so several threads can use the same FeedbackSets;
+     * a reactive rcl constructor is copied for each search
      */
-    protected boolean reduce1(GreedyGraph g, Set fes) {
+    protected class Search {
+
+	private Random rand;
+	private RCLConstructor constructor;
+	private ElitePool pool = null;
+	// best FES found by iterate
+	private Set bestFES = null;
+	private double bestWeight = 0;
+	private int bestIteration = -1;
+	// scratch space of the construction phase, reused by all iterations
+	private GreedyEdge[] candidates = new GreedyEdge[0];
+	private double[] greedyWeights = new double[0];
+	private int[] rclIndices = new int[0];
+	// circular queue of the vertex indices reduce has to look at; a vertex is queued if
+	// its stamp is the one of the current reduction
+	private int[] queue = new int[0];
+	private int[] queueStamps = new int[0];
+	private int queueHead, queueSize, queueStamp = 0;
+	// FES built by iterateFES, copied only when kept
+	private Set constructed = new HashSet();
+	// topological order of the reduced graph for localSearch and relink, see getOrder
+	private GreedyGraph orderedGraph;
+	private DynamicTopologicalOrder order;
+	private boolean[] allVertices, edgeMask;
+	// state of branchAndBound
+	private double[] kernelWeights;
+	private Set bestKernelFES;
+	private double bestKernelWeight;
+	private int nodes;
 
-	//Log.debug("g = " + g);
-	//Log.debug("fes = " + fes + "\nreducing..");
+	/**
+	 * @param template rcl constructor to start from; a reactive one is copied, not modified
+	 */
+	public Search(Random rand, RCLConstructor template) {
+	    this.rand = rand;
+	    constructor = template;
+	    if (constructor instanceof ReactiveRCLConstructor)
+		constructor = ((ReactiveRCLConstructor)constructor).copy();
+	    if (eliteSize > 0)
+		pool = new ElitePool(eliteSize, eliteDistance, new SolutionDistance() {
+			public double distance(Object fes1, Object fes2) {
+			    return ElitePool.symmetricDifference((Set)fes1, (Set)fes2);
+			}
+		    });
+	}
 
-	boolean zeroVertexFound = false;
-	boolean oneVertexFound;
-	do {
-	    oneVertexFound = false;
+	/**
+	 * performs the iterations first, first + step, .. on g
+	 * @param g reduced graph, changed during each iteration and then rewound
+	 */
+	public void iterate(GreedyGraph g, int first, int step) {
+	    for (int i = first; i < iterations; i += step) {
+		if (constructor instanceof ReactiveRCLConstructor)
+		    ((ReactiveRCLConstructor)constructor).startIteration(rand);
+		constructed.clear();
+		iterateFES(g, constructed);
+		Set newFES = constructed;
+		double newWeight = g.getFESWeight(newFES);
+		if (constructor instanceof ReactiveRCLConstructor)
+		    ((ReactiveRCLConstructor)constructor).solutionFound(newWeight);
+		// Log.debug("FESweight=" + newWeight);
+		if (pool != null) {
+		    // the pool keeps the FES
+		    newFES = new HashSet(constructed);
+		    Set elite = (Set)pool.select(rand);
+		    pool.offer(newFES, newWeight);
+		    Set relinked = elite == null ? null : relink(g, newFES, elite);
+		    if (relinked != null) {
+			double relinkedWeight = g.getFESWeight(relinked);
+			pool.offer(relinked, relinkedWeight);
+			if (relinkedWeight < newWeight) {
+			    newFES = relinked;
+			    newWeight = relinkedWeight;
+			}
+		    }
+		}
+		// better result than old one?
+		if (bestFES == null || newWeight < bestWeight) {
+		    bestFES = newFES == constructed ? new HashSet(newFES) : newFES;
+		    bestWeight = newWeight;
+		    bestIteration = i;
+		}
+	    }
+	    orderedGraph = null;
+	    order = null;
+	}
+
+	/**
+	 * makes fes the best FES so far and offers it to the elite pool; fes is not modified
+	 */
+	public void seed(Set fes, double weight) {
+	    bestFES = fes;
+	    bestWeight = weight;
+	    bestIteration = -1;
+	    if (pool != null)
+		pool.offer(fes, weight);
+	}
+
+	public Set getBestFES() {
+	    return bestFES;
+	}
+
+	/**
+	 * ties are broken by iteration number, so the result does not depend on thread timing
+	 */
+	public boolean betterThan(Search search) {
+	    return search == null || search.bestFES == null
+		|| bestFES != null && (bestWeight < search.bestWeight
+				       || bestWeight == search.bestWeight
+				       && bestIteration < search.bestIteration);
+	}
+
+	/**
+	 * adds the statistics of a reactive rcl constructor to the one of the FeedbackSets
+	 */
+	public void mergeConstructor() {
+	    if (constructor instanceof ReactiveRCLConstructor)
+		synchronized (rclConstructor) {
+		    ((ReactiveRCLConstructor)rclConstructor).merge((ReactiveRCLConstructor)constructor);
+		}
+	}
+
+	/**
+	 * adds a FES of an already reduced graph to fes; the construction works on g itself
+	 * and is rewound afterwards, so g ends up as it was
+	 */
+	protected void iterateFES(GreedyGraph g, Set fes) {
+	    int mark = g.mark();
+	    if (splitting)
+		constructSplitting(g, fes);
+	    else
+		while (!g.edgeSet().isEmpty()) {
+		    // randomly select edge to remove from rcl
+		    GreedyEdge edge = selectFromRCL(g);
+		    removeEdge(g, edge, fes);
+		}
+	    g.undo(mark);
+	    // remove redundant edges from fes
+	    localSearch(g, fes);
+	}
+
+	/**
+	 * greedy construction that splits the graph into its strongly connected components
+	 * whenever it has lost an eighth of its vertices since the last look, so the total work
+	 * stays linear in the graph size; components are finished one by one, small ones exactly
+	 * @param g reduced graph, gets destroyed unless recording
+	 */
+	private void constructSplitting(GreedyGraph g, Set fes) {
+	    ArrayList parts = new ArrayList();
+	    parts.add(g);
+	    while (!parts.isEmpty()) {
+		GreedyGraph part = (GreedyGraph)parts.remove(parts.size() - 1);
+		int splitSize = part.vertexSet().size();
+		while (!part.edgeSet().isEmpty()) {
+		    int size = part.vertexSet().size();
+		    if (size <= ExactFeedbackSets.FES_PART_LIMIT) {
+			solveExactly(part, fes);
+			break;
+		    }
+		    if (size <= splitSize) {
+			splitSize = size - size / 8 - 1;
+			GreedyGraph[] split = part.split();
+			if (split != null) {
+			    // smallest first
+			    for (int i = 0; i < split.length; i++) {
+				reduce(split[i], fes);
+				parts.add(split[i]);
+			    }
+			    break;
+			}
+		    }
+		    // randomly select edge to remove from rcl
+		    GreedyEdge edge = selectFromRCL(part);
+		    removeEdge(part, edge, fes);
+		}
+	    }
+	}
+
+	/**
+	 * adds a minimum FES of g to fes
+	 */
+	private void solveExactly(GreedyGraph g, Set fes) {
 	    Object[] vertices = g.vertexSet().toArray();
+	    HashMap index = new HashMap();
 	    for (int i = 0; i < vertices.length; i++)
-		if (g.inDegreeOf(vertices[i]) == 1 && g.outDegreeOf(vertices[i]) == 1) {
-		    GreedyEdge e1 = (GreedyEdge)g.incomingEdgesOf(vertices[i]).iterator().next();
-		    GreedyEdge e2 = (GreedyEdge)g.outgoingEdgesOf(vertices[i]).iterator().next();
-		    Object v1 = e1.getSource();
-		    Object v2 = e2.getTarget();
+		index.put(vertices[i], new Integer(i));
+	    GreedyEdge[] edges = (GreedyEdge[])g.edgeSet().toArray(new GreedyEdge[0]);
+	    int[] source = new int[edges.length], target = new int[edges.length];
+	    double[][] weight = new double[vertices.length][vertices.length];
+	    for (int i = 0; i < edges.length; i++) {
+		source[i] = ((Integer)index.get(edges[i].getSource())).intValue();
+		target[i] = ((Integer)index.get(edges[i].getTarget())).intValue();
+		weight[source[i]][target[i]] += edges[i].getWeight();
+	    }
+	    int[] order = ExactFeedbackSets.minimumFESOrder(weight);
+	    int[] position = new int[order.length];
+	    for (int i = 0; i < order.length; i++)
+		position[order[i]] = i;
+	    // backward edges
+	    for (int i = 0; i < edges.length; i++)
+		if (position[source[i]] > position[target[i]])
+		    edges[i].addIDsTo(fes);
+	}
+
+	/**
+	 * exact FES by branch and bound: each node reduces its graph, bounds it by a cycle packing
+	 * and branches on the edges of a shortest cycle, the i-th branch removing edge i and keeping
+	 * the edges before, which get infinite weight so the reductions never remove them
+	 * @param g reduced graph, not modified
+	 * @return the IDs of a minimum FES of g, or null if the node limit was reached
+	 */
+	protected Set branchAndBound(GreedyGraph g) {
+	    // copy g with one ID per edge, so the copies made at each node stay small
+	    GreedyEdge[] edges = (GreedyEdge[])g.edgeSet().toArray(new GreedyEdge[0]);
+	    GreedyGraph kernel = new GreedyGraph(edges.length);
+	    Iterator it = g.vertexSet().iterator();
+	    while (it.hasNext())
+		kernel.addVertex(it.next());
+	    kernelWeights = new double[edges.length];
+	    for (int i = 0; i < edges.length; i++) {
+		kernelWeights[i] = edges[i].getWeight();
+		kernel.addEdge(edges[i].getSource(), edges[i].getTarget(), kernelWeights[i], i);
+	    }
+	    // a greedy FES gives the first upper bound
+	    Set greedyFES = new HashSet();
+	    iterateFES(g, greedyFES);
+	    bestKernelFES = null;
+	    bestKernelWeight = g.getFESWeight(greedyFES);
+	    nodes = 0;
+	    branch(kernel, new HashSet(), new HashSet());
+	    Set fes = null;
+	    if (nodes <= BRANCH_NODE_LIMIT) {
+		if (bestKernelFES == null)
+		    fes = greedyFES;
+		else {
+		    fes = new HashSet();
+		    it = bestKernelFES.iterator();
+		    while (it.hasNext())
+			edges[((Integer)it.next()).intValue()].addIDsTo(fes);
+		}
+	    }
+	    kernelWeights = null;
+	    bestKernelFES = null;
+	    return fes;
+	}
+
+	/**
+	 * @param g reduced graph of this node, gets modified
+	 * @param fes IDs removed so far
+	 * @param kept IDs that must not be removed
+	 */
+	private void branch(GreedyGraph g, Set fes, Set kept) {
+	    if (++nodes > BRANCH_NODE_LIMIT)
+		return;
+	    double weight = 0;
+	    Iterator it = fes.iterator();
+	    while (it.hasNext()) {
+		Integer id = (Integer)it.next();
+		if (kept.contains(id))
+		    return;
+		weight += kernelWeights[id.intValue()];
+	    }
+	    if (weight >= bestKernelWeight)
+		return;
+	    if (g.edgeSet().isEmpty()) {
+		bestKernelFES = fes;
+		bestKernelWeight = weight;
+		return;
+	    }
+	    CSRGraph graph = new CSRGraph(g);
+	    GreedyEdge[] edges = new GreedyEdge[graph.getEdgeNr()];
+	    double[] weights = new double[edges.length];
+	    for (int e = 0; e < edges.length; e++) {
+		edges[e] = (GreedyEdge)g.getEdge(graph.getVertex(graph.getSource(e)),
+						 graph.getVertex(graph.getTarget(e)));
+		weights[e] = edges[e].getWeight();
+	    }
+	    double bound = ExactFeedbackSets.edgeCyclePacking(graph, weights);
+	    if (weight + bound >= bestKernelWeight)
+		return;
+	    int[] cycle = ExactFeedbackSets.shortestCycle(graph, null, null);
+	    kept = new HashSet(kept);
+	    for (int i = 0; i < cycle.length; i++) {
+		GreedyEdge edge = edges[cycle[i]];
+		if (edge.getWeight() == Double.POSITIVE_INFINITY)
+		    continue;
+		GreedyGraph child = (GreedyGraph)g.clone();
+		GreedyEdge childEdge = (GreedyEdge)child.getEdge(edge.getSource(), edge.getTarget());
+		Set childFES = new HashSet(fes);
+		removeEdge(child, childEdge, childFES);
+		branch(child, childFES, kept);
+		if (nodes > BRANCH_NODE_LIMIT)
+		    return;
+		// the following branches keep edge
+		edge.setWeight(Double.POSITIVE_INFINITY);
+		edge.addIDsTo(kept);
+	    }
+	}
+
+	/**
+	 * reduces g for FES calculation: removes vertices with zero in- or out-degree
+	 * and replaces vertices with inDegree == outDegree == 1 by an edge
+	 * looks at every vertex once, so it is done when a graph is first reduced; afterwards
+	 * removeEdge keeps the graph reduced
+	 * @param fes the FES - might get increased
+	 */
+	protected void reduce(GreedyGraph g, Set fes) {
+	    startQueue(g);
+	    Iterator it = g.vertexSet().iterator();
+	    while (it.hasNext())
+		enqueue(g.indexOf(it.next()));
+	    reduceQueued(g, fes);
+	}
+
+	/**
+	 * removes edge from the reduced graph g, adds its IDs to fes and reduces g again,
+	 * starting from the endpoints of edge, the only vertices whose degree changed
+	 */
+	protected void removeEdge(GreedyGraph g, GreedyEdge edge, Set fes) {
+	    g.removeEdge(edge);
+	    edge.addIDsTo(fes);
+	    startQueue(g);
+	    enqueue(edge.sourceIndex);
+	    enqueue(edge.targetIndex);
+	    reduceQueued(g, fes);
+	}
+
+	/**
+	 * works off the queue; a vertex whose degree changes is queued again, so the time is
+	 * linear in the number of vertices queued and of those removed
+	 */
+	private void reduceQueued(GreedyGraph g, Set fes) {
+	    while (queueSize > 0) {
+		int v = queue[queueHead];
+		queueHead = (queueHead + 1) % queue.length;
+		queueSize--;
+		queueStamps[v] = 0;
+		Object vertex = g.getIndexedVertex(v);
+		if (!g.containsVertex(vertex))
+		    continue;
+		int inDegree = g.inDegreeOf(vertex);
+		int outDegree = g.outDegreeOf(vertex);
+		if (inDegree == 0 || outDegree == 0) {
+		    // all neighbours lose an edge
+		    Iterator it = g.incomingEdgesOf(vertex).iterator();
+		    while (it.hasNext())
+			enqueue(((GreedyEdge)it.next()).sourceIndex);
+		    it = g.outgoingEdgesOf(vertex).iterator();
+		    while (it.hasNext())
+			enqueue(((GreedyEdge)it.next()).targetIndex);
+		    g.removeVertex(vertex);
+		}
+		else if (inDegree == 1 && outDegree == 1) {
+		    GreedyEdge e1 = (GreedyEdge)g.incomingEdgesOf(vertex).iterator().next();
+		    GreedyEdge e2 = (GreedyEdge)g.outgoingEdgesOf(vertex).iterator().next();
 		    GreedyEdge lightEdge;
 		    // which edge is lighter and should be kept/fes-removed?
 		    if (e1.getWeight() <= e2.getWeight())
@@ -308,92 +1138,173 @@ public class FeedbackSets {
 		    else
 			lightEdge = e2;
 		    // remove before adding new edge with same ID
-		    g.removeVertex(vertices[i]);
+		    g.removeVertex(vertex);
 		    // make sure not to create loop..
-		    if (v1 == v2) {
-			fes.addAll(lightEdge.getID());
-			// did removal create zero-vertex?
-			if (g.inDegreeOf(v1) == 0 || g.outDegreeOf(v1) == 0)
-			    zeroVertexFound = true;
-		    }
-		    else {
-			// we might have created a new one-vertex..
-			if (g.containsEdge(v1, v2)
-			    && (g.inDegreeOf(v1) == 1 && g.outDegreeOf(v1) == 1
-				|| g.inDegreeOf(v2) == 1 && g.outDegreeOf(v2) == 1))
-			    oneVertexFound = true;
-			g.addEdge(v1, v2, lightEdge.getWeight(), lightEdge.getID());
-		    }
+		    if (e1.sourceIndex == e2.targetIndex)
+			lightEdge.addIDsTo(fes);
+		    else
+			g.addEdge(new GreedyEdge(e1.getSource(), e2.getTarget(), e1.sourceIndex, e2.targetIndex,
+						 lightEdge.getWeight(), lightEdge.getRepresentativeID(), g));
+		    // degrees drop if the edge got merged or was a loop
+		    enqueue(e1.sourceIndex);
+		    enqueue(e2.targetIndex);
 		}
-	} while (oneVertexFound);
-	//Log.debug("g = " + g);
-	//Log.debug("fes = " + fes);
-	return zeroVertexFound;
-    }
+	    }
+	}
 
-    /**
-     * reduces g for FES calculation
-     * @param fes the FES - might get increased
-     */
-    protected void reduce(GreedyGraph g, Set fes) {
-	do
-	    reduce0(g);
-	while (reduce1(g, fes));
-    }
+	/**
+	 * empties the queue and makes room for the vertices of g
+	 */
+	private void startQueue(GreedyGraph g) {
+	    int vertexNr = g.getIndexedVertexNr();
+	    if (queue.length < vertexNr) {
+		queue = new int[vertexNr];
+		queueStamps = new int[vertexNr];
+		queueStamp = 0;
+	    }
+	    if (queueStamp == Integer.MAX_VALUE) {
+		Arrays.fill(queueStamps, 0);
+		queueStamp = 0;
+	    }
+	    queueStamp++;
+	    queueHead = 0;
+	    queueSize = 0;
+	}
 
-    /**
-     * @return the restricted candidate list of g
-     */
-    protected Set getRCL(GreedyGraph g) {
-	// find max value
-	GreedyEdge[] edges = (GreedyEdge[])g.edgeSet().toArray(new GreedyEdge[0]);
-	double[] greedyWeights = new double[edges.length];
-	double maxGreed = 0;
-	for (int i = 0; i < edges.length; i++) {
-	    greedyWeights[i] = edges[i].getGreedyWeight();
-	    if (greedyWeights[i] > maxGreed)
-		maxGreed = greedyWeights[i];
-	}
-	// construct rcl
-	Set rcl = new HashSet();
-	double border = maxGreed * rclFactor;
-	for (int i = 0; i < edges.length; i++)
-	    if (greedyWeights[i] >= border)
-		rcl.add(edges[i]);
-	return rcl;
-    }
+	private void enqueue(int v) {
+	    if (queueStamps[v] != queueStamp) {
+		queueStamps[v] = queueStamp;
+		queue[(queueHead + queueSize++) % queue.length] = v;
+	    }
+	}
 
-    protected void localSearch(GreedyGraph g, Set fes) {
-	// construct g\fes:
-	GreedyGraph acyclic = (GreedyGraph)g.clone();
-	GreedyEdge[] edges = (GreedyEdge[])acyclic.getEdges(fes).toArray(new GreedyEdge[0]);
-	for (int i = 0; i < edges.length; i++)
-	    acyclic.removeEdge(edges[i]);
-	if (!isAcyclic(acyclic)) {
-	    throw new RuntimeException("Graph not acyclic: " + acyclic + " = " + g + " - " + fes);
-	}
-	// try to add edges back
-	for (int i = 0; i < edges.length; i++)
-	    if (!pathExists(acyclic, edges[i].getTarget(), edges[i].getSource())) {
-		acyclic.addEdge(edges[i]);
-		fes.removeAll(edges[i].getID());
-	    }
-	if (!isAcyclic(acyclic))
-	    throw new RuntimeException("Graph made cyclic: " + acyclic);
-    }
+	/**
+	 * @return the restricted candidate list of g
+	 */
+	protected Set getRCL(GreedyGraph g) {
+	    return constructor.constructRCL(g.edgeSet());
+	}
 
-    protected boolean isAcyclic(GreedyGraph g) {
-	GreedyGraph clone = (GreedyGraph)g.clone();
-	reduce0(clone);
-	return clone.edgeSet().isEmpty();
-    }
+	/**
+	 * @return a random edge from the rcl of g
+	 * an IndexedRCLConstructor works on the scratch arrays, so no allocation is needed
+	 */
+	protected GreedyEdge selectFromRCL(GreedyGraph g) {
+	    if (!(constructor instanceof IndexedRCLConstructor)) {
+		GreedyEdge[] rcl = (GreedyEdge[])getRCL(g).toArray(new GreedyEdge[0]);
+		return rcl[rand.nextInt(rcl.length)];
+	    }
+	    int edgeNr = g.edgeSet().size();
+	    if (candidates.length < edgeNr) {
+		candidates = new GreedyEdge[edgeNr];
+		greedyWeights = new double[edgeNr];
+		rclIndices = new int[edgeNr];
+	    }
+	    // same order as the edge set, so selections match those from getRCL
+	    g.edgeSet().toArray(candidates);
+	    for (int i = 0; i < edgeNr; i++)
+		greedyWeights[i] = candidates[i].getGreedyWeight();
+	    int rclSize = ((IndexedRCLConstructor)constructor).constructRCL(greedyWeights, edgeNr, rclIndices);
+	    return candidates[rclIndices[rand.nextInt(rclSize)]];
+	}
 
-    protected boolean pathExists(Graph g, Object sourceVertex, Object targetVertex) {
-	Iterator it = new BreadthFirstIterator(g, sourceVertex);
-	while (it.hasNext())
-	    if (it.next() == targetVertex)
-		return true;
-	return false;
+	/**
+	 * @return a topological order over a copy of g, reused while g stays the same
+	 * g must not be modified while the order is in use
+	 */
+	private DynamicTopologicalOrder getOrder(GreedyGraph g) {
+	    if (g != orderedGraph) {
+		CSRGraph graph = new CSRGraph(g);
+		order = new DynamicTopologicalOrder(graph);
+		allVertices = new boolean[graph.getVertexNr()];
+		Arrays.fill(allVertices, true);
+		edgeMask = new boolean[graph.getEdgeNr()];
+		orderedGraph = g;
+	    }
+	    return order;
+	}
+
+	/**
+	 * @return the index of edge in the copy of the ordered graph
+	 */
+	private int indexOf(Edge edge) {
+	    CSRGraph graph = order.getGraph();
+	    return graph.getEdge(graph.getIndex(edge.getSource()), graph.getIndex(edge.getTarget()));
+	}
+
+	/**
+	 * restricts the order of g to g without the given edges
+	 * @return false if that graph is cyclic
+	 */
+	private boolean resetOrder(GreedyGraph g, Collection removedEdges) {
+	    getOrder(g);
+	    Arrays.fill(edgeMask, true);
+	    Iterator it = removedEdges.iterator();
+	    while (it.hasNext())
+		edgeMask[indexOf((Edge)it.next())] = false;
+	    return order.reset(allVertices, edgeMask);
+	}
+
+	protected void localSearch(GreedyGraph g, Set fes) {
+	    // construct g\fes:
+	    GreedyEdge[] edges = (GreedyEdge[])g.getEdges(fes).toArray(new GreedyEdge[0]);
+	    if (!resetOrder(g, Arrays.asList(edges)))
+		throw new RuntimeException("Graph not acyclic: " + g + " - " + fes);
+	    // try to add edges back; the order rejects those closing a cycle
+	    for (int i = 0; i < edges.length; i++)
+		if (order.addEdge(indexOf(edges[i])))
+		    edges[i].removeIDsFrom(fes);
+	    if (!order.isConsistent())
+		throw new RuntimeException("Graph made cyclic: " + g + " - " + fes);
+	}
+
+	/**
+	 * path relinking: walks from one FES to another, adding the edges of to one by one
+	 * and putting back edges of from as soon as they close no cycle
+	 * @param g reduced graph both FES belong to
+	 * @return the best FES strictly between both after local search, or null if there is none
+	 */
+	protected Set relink(GreedyGraph g, Set from, Set to) {
+	    Set fromEdges = g.getEdges(from);
+	    Set toEdges = g.getEdges(to);
+	    ArrayList putBack = new ArrayList(fromEdges);
+	    putBack.removeAll(toEdges);
+	    ArrayList toRemove = new ArrayList(toEdges);
+	    toRemove.removeAll(fromEdges);
+	    // construct g\from
+	    if (!resetOrder(g, fromEdges))
+		return null;
+	    Set current = new HashSet(from);
+	    Set best = null;
+	    double bestWeight = 0;
+	    for (int next = 0; next < toRemove.size(); next++) {
+		GreedyEdge edge = (GreedyEdge)toRemove.get(next);
+		order.removeEdge(indexOf(edge));
+		edge.addIDsTo(current);
+		// once all edges are removed, we have reached to
+		if (next + 1 == toRemove.size())
+		    break;
+		boolean changed = false;
+		for (int i = putBack.size() - 1; i >= 0; i--) {
+		    GreedyEdge back = (GreedyEdge)putBack.get(i);
+		    if (order.addEdge(indexOf(back))) {
+			back.removeIDsFrom(current);
+			putBack.remove(i);
+			changed = true;
+		    }
+		}
+		if (changed) {
+		    double weight = g.getFESWeight(current);
+		    if (best == null || weight < bestWeight) {
+			best = new HashSet(current);
+			bestWeight = weight;
+		    }
+		}
+	    }
+	    if (best != null)
+		localSearch(g, best);
+	    return best;
+	}
     }
 
 }
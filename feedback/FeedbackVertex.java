@@ -7,7 +7,7 @@ import grasp.*;
 /**
  * vertex class for use in the FVS problem for directed weighted graphs
  */
-public class FeedbackVertex implements GreedyObject {
+public class FeedbackVertex implements GreedyObject, WorkQueue.Element {
 
     public static final double infinity = -1;
 
@@ -105,4 +105,26 @@ public class FeedbackVertex implements GreedyObject {
 	else
 	    return Math.sqrt(graph.inDegreeOf(this) * graph.outDegreeOf(this)) / getWeight();
     }
+
+    // scratch space of FeedbackVertexGraph.addEdge: stamps marking the vertex as predecessor
+    // of the target or as successor of the source of the edge added, and its edge to the target
+    int predecessorMark = 0, successorMark = 0;
+    FVSEdge targetEdge = null;
+
+    // implements WorkQueue.Element interface
+    private WorkQueue queue = null;
+    private int queueStamp = 0;
+
+    public WorkQueue getQueue() {
+	return queue;
+    }
+
+    public int getQueueStamp() {
+	return queueStamp;
+    }
+
+    public void setQueueEntry(WorkQueue queue, int stamp) {
+	this.queue = queue;
+	queueStamp = stamp;
+    }
 }
@@ -6,16 +6,66 @@ import org._3pq.jgrapht.*;
 import org._3pq.jgrapht.graph.*;
 import org._3pq.jgrapht.edge.*;
 
-import util.*;
-
 public class FeedbackVertexGraph extends SimpleDirectedGraph {
 
     private boolean edgeConnectInitialized = false;
     private HashMap vertexIDMap = new HashMap();
+    // vertex -> (target -> edge), so edges are found in constant time
+    private HashMap successorIndex = new HashMap();
+
+    // zero- and one-vertices and zero-edges; removed ones are dropped from the queues
+    public final WorkQueue reductionVertices = new WorkQueue();
+    public final WorkQueue zeroEdges = new WorkQueue();
+
+    /**
+     * reverts a single change of the graph
+     */
+    public interface UndoEntry {
+	public void undo();
+    }
+
+    /**
+     * signature of a vertex for finding parallel vertices: a random key of the vertex and the
+     * sums of the keys of its predecessors and its successors; parallel vertices have equal sums
+     */
+    private static class Signature {
+	final Object vertex;
+	final long key;
+	long predecessorSum = 0, successorSum = 0;
+	// next signature in the same bucket
+	Signature next = null;
+	boolean candidate = false, removed = false;
+
+	Signature(Object vertex, long key) {
+	    this.vertex = vertex;
+	    this.key = key;
+	}
 
-    // zero- and one-vertices and zero-edges
-    public final AnySet reductionVertices = new AnySet();
-    public final AnySet zeroEdges = new AnySet();
+	Long getBucket() {
+	    return new Long(CanonicalGraph.mix(predecessorSum) + successorSum);
+	}
+    }
+
+    // vertex -> signature and sums -> chain of signatures, null while parallel vertices are not
+    // tracked
+    private HashMap signatures = null;
+    private HashMap buckets = null;
+    private long lastKey = 0;
+    // signatures that got into a bucket together with others
+    private ArrayList parallelCandidates = new ArrayList();
+
+    // nesting depth of startBatch calls, and the edges whose connect numbers changed meanwhile
+    private int batchDepth = 0;
+    private ArrayList batchEdges = new ArrayList();
+
+    // stamp of the latest marking of vertices by addEdge, and the source whose successors
+    // are marked, so edges added from the same source one after the other need no new marking
+    private int markStamp = 0, successorStamp = 0;
+    private Object markedSource = null;
+
+    // undo log, null if not recording
+    private ArrayList trail = null;
+    private boolean undoing = false;
 
     public FeedbackVertexGraph() {
 	super(new EdgeFactory() {
@@ -25,7 +75,7 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 	    });
     }
 
-    public boolean addVertex(Object vertex) {
+    public boolean addVertex(final Object vertex) {
 	if (vertex instanceof FeedbackVertex) {
 	    ((FeedbackVertex)vertex).setGraph(this);
 	    // update vertexIDMap
@@ -33,17 +83,66 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 	    while (it.hasNext())
 		vertexIDMap.put(it.next(), vertex);
 	}
-	return super.addVertex(vertex);
+	boolean added = super.addVertex(vertex);
+	if (added) {
+	    successorIndex.put(vertex, new HashMap());
+	    if (signatures != null) {
+		Signature signature = new Signature(vertex, CanonicalGraph.mix(++lastKey));
+		signatures.put(vertex, signature);
+		link(signature);
+	    }
+	    log(new UndoEntry() {
+		    public void undo() {
+			removeVertex(vertex);
+		    }
+		});
+	}
+	return added;
     }
 
-    public boolean removeVertex(Object vertex) {
+    public boolean removeVertex(final Object vertex) {
 	// update vertexIDMap
 	if (vertex instanceof FeedbackVertex) {
 	    Iterator it = ((FeedbackVertex)vertex).getID().iterator();
 	    while (it.hasNext())
 		vertexIDMap.remove(it.next());
 	}
-	return super.removeVertex(vertex);
+	// removes the edges first, which get logged individually
+	startBatch();
+	boolean removed;
+	try {
+	    removed = super.removeVertex(vertex);
+	} finally {
+	    finishBatch();
+	}
+	if (removed) {
+	    successorIndex.remove(vertex);
+	    reductionVertices.remove((WorkQueue.Element)vertex);
+	    if (signatures != null) {
+		Signature signature = (Signature)signatures.remove(vertex);
+		unlink(signature);
+		signature.removed = true;
+	    }
+	    log(new UndoEntry() {
+		    public void undo() {
+			addVertex(vertex);
+		    }
+		});
+	}
+	return removed;
+    }
+
+    /**
+     * looks the edge up in the successor index
+     * @return the edge from source to target, null if there is none
+     */
+    public Edge getEdge(Object source, Object target) {
+	HashMap successors = (HashMap)successorIndex.get(source);
+	return successors == null ? null : (Edge)successors.get(target);
+    }
+
+    public boolean containsEdge(Object source, Object target) {
+	return getEdge(source, target) != null;
     }
 
     /**
@@ -58,32 +157,243 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
      * @return number of edges newly added
      */
     public int removeInfinityVertex(Object v1) {
-	int added = 0;
 	Edge[] inEdges = (Edge[])incomingEdgesOf(v1).toArray(new Edge[0]);
 	Edge[] outEdges = (Edge[])outgoingEdgesOf(v1).toArray(new Edge[0]);
-	removeVertex(v1);
-	for (int i = 0; i < inEdges.length; i++) {
-	    Object source = inEdges[i].getSource();
+	Object[] sources = new Object[inEdges.length * outEdges.length];
+	Object[] targets = new Object[sources.length];
+	for (int i = 0; i < inEdges.length; i++)
 	    for (int j = 0; j < outEdges.length; j++) {
-		Object target = outEdges[j].getTarget();
-		if (!containsEdge(source, target)) {
-		    addEdge(source, target);
-		    added++;
-		}
+		sources[i * outEdges.length + j] = inEdges[i].getSource();
+		targets[i * outEdges.length + j] = outEdges[j].getTarget();
 	    }
+	startBatch();
+	try {
+	    removeVertex(v1);
+	    return addEdges(sources, targets);
+	} finally {
+	    finishBatch();
+	}
+    }
+
+    /**
+     * adds an edge from each sources[i] to targets[i] as one batch; edges already contained
+     * or given twice are skipped; edges with the same source should be given one after the
+     * other, as its successors are then marked only once
+     * @return number of edges newly added
+     */
+    public int addEdges(Object[] sources, Object[] targets) {
+	int added = 0;
+	markedSource = null;
+	startBatch();
+	try {
+	    for (int i = 0; i < sources.length; i++)
+		if (!containsEdge(sources[i], targets[i])
+		    && addEdge(getEdgeFactory().createEdge(sources[i], targets[i]), true))
+		    added++;
+	} finally {
+	    finishBatch();
 	}
 	return added;
     }
 
+    /**
+     * starts a batch of changes: until the matching finishBatch, changes of the direct connect
+     * numbers are only collected per edge, so each edge is updated and reported as zero edge at
+     * most once, with its final numbers; batches may be nested
+     */
+    public void startBatch() {
+	batchDepth++;
+    }
+
+    /**
+     * ends a batch of changes; the outermost call applies the collected changes
+     */
+    public void finishBatch() {
+	if (--batchDepth > 0)
+	    return;
+	for (int i = 0; i < batchEdges.size(); i++) {
+	    FVSEdge edge = (FVSEdge)batchEdges.get(i);
+	    // removed meanwhile?
+	    if (getEdge(edge.getSource(), edge.getTarget()) == edge) {
+		if (edge.preDelta != 0 || edge.batchAdded)
+		    edge.setPreConnect(edge.getPreConnect() + edge.preDelta, zeroEdges);
+		if (edge.succDelta != 0 || edge.batchAdded)
+		    edge.setSuccConnect(edge.getSuccConnect() + edge.succDelta, zeroEdges);
+	    }
+	    edge.preDelta = edge.succDelta = 0;
+	    edge.batched = edge.batchAdded = false;
+	}
+	batchEdges.clear();
+    }
+
+    /**
+     * changes the preConnect number of edge, reporting it as zero edge if it drops to 0
+     */
+    private void changePreConnect(FVSEdge edge, int delta) {
+	if (batchDepth > 0) {
+	    edge.preDelta += delta;
+	    addBatchEdge(edge);
+	} else if (delta > 0)
+	    edge.incPreConnect();
+	else
+	    edge.decPreConnect(zeroEdges);
+    }
+
+    /**
+     * changes the succConnect number of edge, reporting it as zero edge if it drops to 0
+     */
+    private void changeSuccConnect(FVSEdge edge, int delta) {
+	if (batchDepth > 0) {
+	    edge.succDelta += delta;
+	    addBatchEdge(edge);
+	} else if (delta > 0)
+	    edge.incSuccConnect();
+	else
+	    edge.decSuccConnect(zeroEdges);
+    }
+
+    private void addBatchEdge(FVSEdge edge) {
+	if (!edge.batched) {
+	    edge.batched = true;
+	    batchEdges.add(edge);
+	}
+    }
+
+    /**
+     * starts tracking parallel vertices, i.e. vertices with the same predecessors and the same
+     * successors, if not done yet; from then on the signatures of the vertices are updated with
+     * each edge change, and each vertex that gets a possibly parallel vertex becomes a candidate
+     */
+    public void trackParallelVertices() {
+	if (signatures != null)
+	    return;
+	signatures = new HashMap();
+	buckets = new HashMap();
+	Iterator it = vertexSet().iterator();
+	while (it.hasNext()) {
+	    Object vertex = it.next();
+	    signatures.put(vertex, new Signature(vertex, CanonicalGraph.mix(++lastKey)));
+	}
+	it = edgeSet().iterator();
+	while (it.hasNext()) {
+	    Edge edge = (Edge)it.next();
+	    Signature source = (Signature)signatures.get(edge.getSource());
+	    Signature target = (Signature)signatures.get(edge.getTarget());
+	    source.successorSum += target.key;
+	    target.predecessorSum += source.key;
+	}
+	it = signatures.values().iterator();
+	while (it.hasNext())
+	    link((Signature)it.next());
+    }
+
+    /**
+     * @return the next vertex that may have parallel vertices, null if there is none
+     */
+    public Object nextParallelCandidate() {
+	while (!parallelCandidates.isEmpty()) {
+	    Signature signature = (Signature)parallelCandidates.remove(parallelCandidates.size() - 1);
+	    signature.candidate = false;
+	    if (!signature.removed)
+		return signature.vertex;
+	}
+	return null;
+    }
+
+    /**
+     * @param vertex must be in the graph, whose parallel vertices must be tracked
+     * @return the vertices parallel to vertex, without vertex itself
+     */
+    public List getParallelVertices(Object vertex) {
+	List parallel = new ArrayList();
+	Signature signature = (Signature)signatures.get(vertex);
+	Signature other = (Signature)buckets.get(signature.getBucket());
+	for (; other != null; other = other.next)
+	    if (other != signature && other.predecessorSum == signature.predecessorSum
+		&& other.successorSum == signature.successorSum && isParallel(vertex, other.vertex))
+		parallel.add(other.vertex);
+	return parallel;
+    }
+
+    /**
+     * compares the neighbours of v and w, which are equal if they have the same degrees and
+     * all neighbours of v are neighbours of w
+     */
+    private boolean isParallel(Object v, Object w) {
+	if (inDegreeOf(v) != inDegreeOf(w) || outDegreeOf(v) != outDegreeOf(w))
+	    return false;
+	HashMap successors = (HashMap)successorIndex.get(w);
+	List outEdges = outgoingEdgesOf(v);
+	for (int i = 0, n = outEdges.size(); i < n; i++)
+	    if (!successors.containsKey(((Edge)outEdges.get(i)).getTarget()))
+		return false;
+	List inEdges = incomingEdgesOf(v);
+	for (int i = 0, n = inEdges.size(); i < n; i++)
+	    if (!((HashMap)successorIndex.get(((Edge)inEdges.get(i)).getSource())).containsKey(w))
+		return false;
+	return true;
+    }
+
+    /**
+     * updates the signatures for an edge from source to target being added (sign 1) or
+     * removed (sign -1)
+     */
+    private void changeSignatures(Object source, Object target, int sign) {
+	Signature sourceSignature = (Signature)signatures.get(source);
+	Signature targetSignature = (Signature)signatures.get(target);
+	unlink(sourceSignature);
+	sourceSignature.successorSum += sign * targetSignature.key;
+	link(sourceSignature);
+	unlink(targetSignature);
+	targetSignature.predecessorSum += sign * sourceSignature.key;
+	link(targetSignature);
+    }
+
+    /**
+     * puts signature into its bucket, making it a candidate if the bucket is not empty
+     */
+    private void link(Signature signature) {
+	Long bucket = signature.getBucket();
+	signature.next = (Signature)buckets.put(bucket, signature);
+	if (signature.next != null && !signature.candidate) {
+	    signature.candidate = true;
+	    parallelCandidates.add(signature);
+	}
+    }
+
+    private void unlink(Signature signature) {
+	Long bucket = signature.getBucket();
+	Signature first = (Signature)buckets.get(bucket);
+	if (first == signature) {
+	    if (signature.next == null)
+		buckets.remove(bucket);
+	    else
+		buckets.put(bucket, signature.next);
+	} else {
+	    while (first.next != signature)
+		first = first.next;
+	    first.next = signature.next;
+	}
+	signature.next = null;
+    }
+
     /**
      * merges v1 and v2 via v1.merge(v2) into a single vertex
      * does update the mapping ID->vertex
      */
-    public void mergeVertices(FeedbackVertex v1, FeedbackVertex v2) {
+    public void mergeVertices(final FeedbackVertex v1, final FeedbackVertex v2) {
 	if (v1 == v2)
 	    return;
 	removeVertex(v2);
+	final double weight = v1.getWeight();
 	v1.merge(v2);
+	// v2 keeps its IDs, so re-adding it restores the mapping
+	log(new UndoEntry() {
+		public void undo() {
+		    v1.getID().removeAll(v2.getID());
+		    v1.setWeight(weight);
+		}
+	    });
 	// update mapping ID->vertex
 	Iterator it = v2.getID().iterator();
 	while (it.hasNext())
@@ -93,30 +403,37 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
     /**
      * removes the given edge from the graph and updates direct connect numbers
      */
-    public boolean removeEdge(Edge edge) {
+    public boolean removeEdge(final Edge edge) {
 	Object source = edge.getSource();
 	Object target = edge.getTarget();
 
 	// update edges
 	if (edgeConnectInitialized) {
 	    try {
+	    // the edge lists are only read, so they need not be copied
+	    HashMap sourceSuccessors = (HashMap)successorIndex.get(source);
 	    // update direct connects where edge is second edge
-	    FVSEdge[] sourceInEdges = (FVSEdge[])incomingEdgesOf(source).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < sourceInEdges.length; i++)
-		if (!containsEdge(sourceInEdges[i].getSource(), target))
-		    sourceInEdges[i].decSuccConnect(zeroEdges);
+	    List sourceInEdges = incomingEdgesOf(source);
+	    for (int i = 0, n = sourceInEdges.size(); i < n; i++) {
+		FVSEdge firstEdge = (FVSEdge)sourceInEdges.get(i);
+		if (!((HashMap)successorIndex.get(firstEdge.getSource())).containsKey(target))
+		    changeSuccConnect(firstEdge, -1);
+	    }
 	    // update direct connects where edge is first edge
-	    FVSEdge[] targetOutEdges = (FVSEdge[])outgoingEdgesOf(target).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < targetOutEdges.length; i++)
-		if (!containsEdge(source, targetOutEdges[i].getTarget()))
-		    targetOutEdges[i].decPreConnect(zeroEdges);
+	    List targetOutEdges = outgoingEdgesOf(target);
+	    for (int i = 0, n = targetOutEdges.size(); i < n; i++) {
+		FVSEdge secondEdge = (FVSEdge)targetOutEdges.get(i);
+		if (!sourceSuccessors.containsKey(secondEdge.getTarget()))
+		    changePreConnect(secondEdge, -1);
+	    }
 	    // update direct connects where edge is direct edge
-	    FVSEdge[] sourceOutEdges = (FVSEdge[])outgoingEdgesOf(source).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < sourceOutEdges.length; i++) {
-		FVSEdge secondEdge = (FVSEdge)getEdge(sourceOutEdges[i].getTarget(), target);
+	    List sourceOutEdges = outgoingEdgesOf(source);
+	    for (int i = 0, n = sourceOutEdges.size(); i < n; i++) {
+		FVSEdge firstEdge = (FVSEdge)sourceOutEdges.get(i);
+		FVSEdge secondEdge = (FVSEdge)((HashMap)successorIndex.get(firstEdge.getTarget())).get(target);
 		if (secondEdge != null) {
-		    sourceOutEdges[i].incSuccConnect();
-		    secondEdge.incPreConnect();
+		    changeSuccConnect(firstEdge, 1);
+		    changePreConnect(secondEdge, 1);
 		}
 	    }
 	    } catch(RuntimeException e) {
@@ -129,11 +446,23 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 
 	// update zero- and one-vertices
 	if (outDegreeOf(source) <= 2)
-	    reductionVertices.add(source);
+	    reductionVertices.add((WorkQueue.Element)source);
 	if (inDegreeOf(target) <= 2)
-	    reductionVertices.add(target);
+	    reductionVertices.add((WorkQueue.Element)target);
 
-	return super.removeEdge(edge);
+	boolean removed = super.removeEdge(edge);
+	if (removed) {
+	    ((HashMap)successorIndex.get(source)).remove(target);
+	    zeroEdges.remove((FVSEdge)edge);
+	    if (signatures != null)
+		changeSignatures(source, target, -1);
+	    log(new UndoEntry() {
+		    public void undo() {
+			addEdge(edge);
+		    }
+		});
+	}
+	return removed;
     }
 
     /**
@@ -151,38 +480,102 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
      * adds given edge to the graph and updates direct connect numbers
      */
     public boolean addEdge(Edge edge) {
-	if (edgeConnectInitialized) {
-	    try {
-	    Object source = edge.getSource();
-	    Object target = edge.getTarget();
-	    // update direct connects where edge is second edge
-	    FVSEdge[] sourceInEdges = (FVSEdge[])incomingEdgesOf(source).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < sourceInEdges.length; i++)
-		if (!containsEdge(sourceInEdges[i].getSource(), target))
-		    sourceInEdges[i].incSuccConnect();
-	    // update direct connects where edge is first edge
-	    FVSEdge[] targetOutEdges = (FVSEdge[])outgoingEdgesOf(target).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < targetOutEdges.length; i++)
-		if (!containsEdge(source, targetOutEdges[i].getTarget()))
-		    targetOutEdges[i].incPreConnect();
-	    // update direct connects where edge is direct edge
-	    FVSEdge[] sourceOutEdges = (FVSEdge[])outgoingEdgesOf(source).toArray(new FVSEdge[0]);
-	    for (int i = 0; i < sourceOutEdges.length; i++) {
-		FVSEdge secondEdge = (FVSEdge)getEdge(sourceOutEdges[i].getTarget(), target);
-		if (secondEdge != null) {
-		    sourceOutEdges[i].decSuccConnect(zeroEdges);
-		    secondEdge.decPreConnect(zeroEdges);
-		}
+	markedSource = null;
+	return addEdge(edge, false);
+    }
+
+    /**
+     * @param keepMarks if the successors of markedSource are still marked, see addEdges
+     */
+    private boolean addEdge(final Edge edge, boolean keepMarks) {
+	boolean added = super.addEdge(edge);
+	if (added) {
+	    ((HashMap)successorIndex.get(edge.getSource())).put(edge.getTarget(), edge);
+	    if (edgeConnectInitialized)
+		addConnects((FVSEdge)edge, keepMarks);
+	    if (signatures != null)
+		changeSignatures(edge.getSource(), edge.getTarget(), 1);
+	    log(new UndoEntry() {
+		    public void undo() {
+			removeEdge(edge);
+		    }
+		});
+	}
+	return added;
+    }
+
+    /**
+     * updates the direct connect numbers for an edge just added and inits those of the edge;
+     * instead of looking up each possible shortcut, the predecessors of the target and the
+     * successors of the source are marked, so each neighbour list is scanned once
+     */
+    private void addConnects(FVSEdge edge, boolean keepMarks) {
+	FeedbackVertex source = (FeedbackVertex)edge.getSource();
+	FeedbackVertex target = (FeedbackVertex)edge.getTarget();
+	int predecessorStamp = nextMarkStamp();
+	if (!keepMarks || source != markedSource) {
+	    successorStamp = nextMarkStamp();
+	    markedSource = source;
+	    List sourceOutEdges = outgoingEdgesOf(source);
+	    for (int i = 0, n = sourceOutEdges.size(); i < n; i++)
+		((FeedbackVertex)((Edge)sourceOutEdges.get(i)).getTarget()).successorMark = successorStamp;
+	}
+	else
+	    target.successorMark = successorStamp;
+	List targetInEdges = incomingEdgesOf(target);
+	for (int i = 0, n = targetInEdges.size(); i < n; i++) {
+	    FVSEdge inEdge = (FVSEdge)targetInEdges.get(i);
+	    FeedbackVertex predecessor = (FeedbackVertex)inEdge.getSource();
+	    predecessor.predecessorMark = predecessorStamp;
+	    predecessor.targetEdge = inEdge;
+	}
+	// update direct connects where edge is second edge
+	int preConnect = 0;
+	List sourceInEdges = incomingEdgesOf(source);
+	for (int i = 0, n = sourceInEdges.size(); i < n; i++) {
+	    FVSEdge firstEdge = (FVSEdge)sourceInEdges.get(i);
+	    if (((FeedbackVertex)firstEdge.getSource()).predecessorMark != predecessorStamp) {
+		changeSuccConnect(firstEdge, 1);
+		preConnect++;
 	    }
-	    initEdge((FVSEdge)edge);
-	    } catch(RuntimeException e) {
-		//e.printStackTrace();
-		System.out.println("G = " + this);
-		System.out.println("edge = " + edge);
-		throw e;
+	}
+	// update direct connects where edge is first edge
+	int succConnect = 0;
+	List targetOutEdges = outgoingEdgesOf(target);
+	for (int i = 0, n = targetOutEdges.size(); i < n; i++) {
+	    FVSEdge secondEdge = (FVSEdge)targetOutEdges.get(i);
+	    if (((FeedbackVertex)secondEdge.getTarget()).successorMark != successorStamp) {
+		changePreConnect(secondEdge, 1);
+		succConnect++;
+	    }
+	}
+	// update direct connects where edge is direct edge
+	List sourceOutEdges = outgoingEdgesOf(source);
+	for (int i = 0, n = sourceOutEdges.size(); i < n; i++) {
+	    FVSEdge firstEdge = (FVSEdge)sourceOutEdges.get(i);
+	    FeedbackVertex middle = (FeedbackVertex)firstEdge.getTarget();
+	    if (middle.predecessorMark == predecessorStamp) {
+		changeSuccConnect(firstEdge, -1);
+		changePreConnect(middle.targetEdge, -1);
 	    }
 	}
-	return super.addEdge(edge);
+	setConnects(edge, preConnect, succConnect);
+    }
+
+    /**
+     * @return a stamp greater than all marks of the vertices
+     */
+    private int nextMarkStamp() {
+	if (markStamp == Integer.MAX_VALUE) {
+	    Iterator it = vertexSet().iterator();
+	    while (it.hasNext()) {
+		FeedbackVertex vertex = (FeedbackVertex)it.next();
+		vertex.predecessorMark = vertex.successorMark = 0;
+	    }
+	    markStamp = 0;
+	    markedSource = null;
+	}
+	return ++markStamp;
     }
 
     /**
@@ -193,18 +586,33 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 	Object target = edge.getTarget();
 	// calculate preConnect number
 	int preConnect = 0;
-	FVSEdge[] sourceInEdges = (FVSEdge[])incomingEdgesOf(source).toArray(new FVSEdge[0]);
-	for (int i = 0; i < sourceInEdges.length; i++)
-	    if (!containsEdge(sourceInEdges[i].getSource(), target))
+	List sourceInEdges = incomingEdgesOf(source);
+	for (int i = 0, n = sourceInEdges.size(); i < n; i++) {
+	    Object predecessor = ((Edge)sourceInEdges.get(i)).getSource();
+	    if (!((HashMap)successorIndex.get(predecessor)).containsKey(target))
 		preConnect++;
-	edge.setPreConnect(preConnect, zeroEdges);
+	}
 	// calculate succConnect number
 	int succConnect = 0;
-	FVSEdge[] targetOutEdges = (FVSEdge[])outgoingEdgesOf(target).toArray(new FVSEdge[0]);
-	for (int i = 0; i < targetOutEdges.length; i++)
-	    if (!containsEdge(source, targetOutEdges[i].getTarget()))
+	HashMap sourceSuccessors = (HashMap)successorIndex.get(source);
+	List targetOutEdges = outgoingEdgesOf(target);
+	for (int i = 0, n = targetOutEdges.size(); i < n; i++)
+	    if (!sourceSuccessors.containsKey(((Edge)targetOutEdges.get(i)).getTarget()))
 		succConnect++;
-	edge.setSuccConnect(succConnect, zeroEdges);
+	setConnects(edge, preConnect, succConnect);
+    }
+
+    private void setConnects(FVSEdge edge, int preConnect, int succConnect) {
+	if (batchDepth > 0) {
+	    // zeros are reported at the end of the batch
+	    edge.initConnects(preConnect, succConnect);
+	    edge.preDelta = edge.succDelta = 0;
+	    edge.batchAdded = true;
+	    addBatchEdge(edge);
+	} else {
+	    edge.setPreConnect(preConnect, zeroEdges);
+	    edge.setSuccConnect(succConnect, zeroEdges);
+	}
     }
 
     /**
@@ -229,7 +637,7 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 	while (it.hasNext()) {
 	    Object vertex = it.next();
 	    if (inDegreeOf(vertex) <= 1 || outDegreeOf(vertex) <= 1)
-		reductionVertices.add(vertex);
+		reductionVertices.add((WorkQueue.Element)vertex);
 	}
     }
 
@@ -242,7 +650,48 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
     }
 
     /**
-     * @return a deep-copy of itself: vertices are cloned
+     * starts recording changes if not done yet; should only be called when the graph is
+     * fully reduced, as undo does not restore reduction vertices, zero edges and parallel
+     * candidates
+     * @return the current position of the undo log
+     */
+    public int mark() {
+	if (trail == null)
+	    trail = new ArrayList();
+	return trail.size();
+    }
+
+    /**
+     * records the inverse of a change, if recording
+     */
+    public void log(UndoEntry entry) {
+	if (trail != null && !undoing)
+	    trail.add(entry);
+    }
+
+    /**
+     * rewinds all changes recorded since mark was obtained
+     */
+    public void undo(int mark) {
+	undoing = true;
+	startBatch();
+	try {
+	    while (trail.size() > mark)
+		((UndoEntry)trail.remove(trail.size() - 1)).undo();
+	} finally {
+	    finishBatch();
+	    undoing = false;
+	}
+	// the graph is back in its reduced state
+	reductionVertices.clear();
+	zeroEdges.clear();
+	for (int i = 0; i < parallelCandidates.size(); i++)
+	    ((Signature)parallelCandidates.get(i)).candidate = false;
+	parallelCandidates.clear();
+    }
+
+    /**
+     * @return a deep-copy of itself: vertices are cloned; the undo log is not copied
      */
     public Object clone() {
 	FeedbackVertexGraph clone;
@@ -276,4 +725,27 @@ public class FeedbackVertexGraph extends SimpleDirectedGraph {
 	return clone;
     }
 
+    /**
+     * @return the subgraph induced by vertices, on copies of the vertices, initialized for reduction
+     */
+    public FeedbackVertexGraph createSubgraph(Object[] vertices) {
+	FeedbackVertexGraph subgraph = new FeedbackVertexGraph();
+	HashMap copies = new HashMap();
+	for (int i = 0; i < vertices.length; i++) {
+	    Object copy = ((FeedbackVertex)vertices[i]).clone();
+	    copies.put(vertices[i], copy);
+	    subgraph.addVertex(copy);
+	}
+	for (int i = 0; i < vertices.length; i++) {
+	    Iterator it = outgoingEdgesOf(vertices[i]).iterator();
+	    while (it.hasNext()) {
+		Object target = copies.get(((Edge)it.next()).getTarget());
+		if (target != null)
+		    subgraph.addEdge(copies.get(vertices[i]), target);
+	    }
+	}
+	subgraph.init();
+	return subgraph;
+    }
+
 }
@@ -119,11 +119,11 @@ public class FeedbackVertexReducer {
 
     /**
      * checks if a vertex can be 0-reduced and does so if possible
+     * @param vertex must be in g, as queued vertices are
      * @return true if removed
      */
     protected boolean reduce0(FeedbackVertex vertex, FeedbackVertexGraph g) {
-	if (!g.containsVertex(vertex) ||
-	    g.inDegreeOf(vertex) > 0 && g.outDegreeOf(vertex) > 0)
+	if (g.inDegreeOf(vertex) > 0 && g.outDegreeOf(vertex) > 0)
 	    return false;
 
 	g.removeVertex(vertex);
@@ -133,12 +133,10 @@ public class FeedbackVertexReducer {
     /**
      * checks if a vertex can be 1-reduced and does so if possible
      * IDs of vertices removed are added to fvs
+     * @param vertex must be in g, as queued vertices are
      * @return true if removed
      */
     protected boolean reduce1(FeedbackVertex vertex, FeedbackVertexGraph g, Set fvs) {
-	if (!g.containsVertex(vertex))
-	    return false;
-
 	FeedbackVertex cover = null;
 	if (g.inDegreeOf(vertex) == 1) {
 	    cover = (FeedbackVertex)((Edge)g.incomingEdgesOf(vertex).iterator().next()).getSource();
@@ -179,29 +177,20 @@ public class FeedbackVertexReducer {
     }
 
     /**
-     * merges all parallel vertices
+     * merges all parallel vertices; g tracks them from the first call on, so later calls only
+     * look at the vertices whose neighbours changed
      * @return number of vertices eliminated
      */
     protected int reduceParallel(FeedbackVertexGraph g) {
 	int reduced = 0;
-	// find parallel vertices
-	Map parallel = new ParallelVertexFinder().findParallelVertices(g);
-	// merge them
-	FeedbackVertex[] vertices = (FeedbackVertex[])g.vertexSet().toArray(new FeedbackVertex[0]);
-	for (int i = 0; i < vertices.length; i++) {
-	    // has parallel set already been handled?
-	    if (!g.containsVertex(vertices[i]))
-		continue;
-	    Iterator it = ((Set)parallel.get(vertices[i])).iterator();
-	    // merge all parallel vertices with vertices[i]
-	    while (it.hasNext()) {
-		Object vertex = it.next();
-		if (vertex != vertices[i]) {
-		    //g.removeVertex(vertex);
-		    //vertices[i].merge((FeedbackVertex)vertex);
-		    g.mergeVertices(vertices[i], (FeedbackVertex)vertex);
-		    reduced++;
-		}
+	g.trackParallelVertices();
+	Object vertex;
+	while ((vertex = g.nextParallelCandidate()) != null) {
+	    // merge all parallel vertices with vertex
+	    List parallel = g.getParallelVertices(vertex);
+	    for (int i = 0; i < parallel.size(); i++) {
+		g.mergeVertices((FeedbackVertex)vertex, (FeedbackVertex)parallel.get(i));
+		reduced++;
 	    }
 	}
 	return reduced;
@@ -230,9 +219,13 @@ public class FeedbackVertexReducer {
     }
     */
 
+    /**
+     * removes edge if it is not needed for any cycle
+     * @param edge must be in g, as queued edges are
+     * @return true if removed
+     */
     protected boolean reduceEdge(FVSEdge edge, FeedbackVertexGraph g) {
-	if (!g.containsEdge(edge) ||
-	    edge.getPreConnect() > 0 && edge.getSuccConnect() > 0)
+	if (edge.getPreConnect() > 0 && edge.getSuccConnect() > 0)
 	    return false;
 
 	return g.removeEdge(edge);
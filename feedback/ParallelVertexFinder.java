@@ -7,48 +7,45 @@ import org._3pq.jgrapht.graph.*;
 import org._3pq.jgrapht.edge.*;
 
 /**
- * utility class that identifies parallel vertices in a directed graph
+ * utility class that identifies parallel vertices in a directed graph, i.e. vertices with the same
+ * predecessors and the same successors
  */
 public class ParallelVertexFinder {
 
-    private class SplitSet extends HashSet {
-
-	private SplitSet split = null;
-	private int lastSplit = -1;
-
-	/**
-	 * moves element o into new SplitSet
-	 * @param o element to be moved
-	 * @param splitID if splitID != splitID of last call a new split is created
-	 * @return the split o got moved into
-	 */
-	public SplitSet split(Object o, int splitID) {
-	    if (!contains(o))
-		throw new IllegalArgumentException("Object " + o + " not in set");
-	    if (lastSplit != splitID) {
-		split = new SplitSet();
-		lastSplit = splitID;
-	    }
-	    remove(o);
-	    split.add(o);
-	    return split;
-	}
-    }
-
-    private static Set successorsOf(Object vertex, DirectedGraph g) {
-	Set succ = new HashSet();
-	Iterator it = g.outgoingEdgesOf(vertex).iterator();
-	while (it.hasNext())
-	    succ.add(((Edge)it.next()).getTarget());
-	return succ;
+    /**
+     * finds the classes of parallel vertices in O(V+E) by partition refinement: the classes are
+     * split by the successors of each vertex, which leaves vertices with equal predecessors
+     * together, and then by the predecessors of each vertex
+     * @param source source vertex of each edge, vertices being 0..vertexNr-1
+     * @param target target vertex of each edge; parallel edges are allowed
+     * @return the partition of the vertices into classes of parallel vertices
+     */
+    public static Partition findParallelClasses(int vertexNr, int[] source, int[] target) {
+	Partition partition = new Partition(vertexNr);
+	refine(partition, vertexNr, source, target);
+	refine(partition, vertexNr, target, source);
+	return partition;
     }
 
-    private static Set predecessorsOf(Object vertex, DirectedGraph g) {
-	Set pre = new HashSet();
-	Iterator it = g.incomingEdgesOf(vertex).iterator();
-	while (it.hasNext())
-	    pre.add(((Edge)it.next()).getSource());
-	return pre;
+    /**
+     * splits the classes by the heads of the edges of each tail vertex
+     */
+    private static void refine(Partition partition, int vertexNr, int[] tail, int[] head) {
+	// group the heads by tail via counting sort
+	int[] start = new int[vertexNr + 1];
+	for (int e = 0; e < tail.length; e++)
+	    start[tail[e] + 1]++;
+	for (int v = 0; v < vertexNr; v++)
+	    start[v + 1] += start[v];
+	int[] fill = (int[])start.clone();
+	int[] heads = new int[tail.length];
+	for (int e = 0; e < tail.length; e++)
+	    heads[fill[tail[e]]++] = head[e];
+	for (int v = 0; v < vertexNr; v++) {
+	    for (int i = start[v]; i < start[v + 1]; i++)
+		partition.mark(heads[i]);
+	    partition.split();
+	}
     }
 
     /**
@@ -56,35 +53,27 @@ public class ParallelVertexFinder {
      * @return mapping: vertex -> set of all parallel vertices
      */
     public Map findParallelVertices(DirectedGraph g) {
-	HashMap vertexMap = new HashMap();
-	// init vertexMap
-	SplitSet mainSplit = new SplitSet();
-	mainSplit.addAll(g.vertexSet());
-	Iterator it = g.vertexSet().iterator();
-	while (it.hasNext())
-	    vertexMap.put(it.next(), mainSplit);
-	// split by predecessors
-	int splitID = 0;
-	it = g.vertexSet().iterator();
-	while (it.hasNext()) {
-	    Iterator splitIt = successorsOf(it.next(), g).iterator();
-	    while (splitIt.hasNext()) {
-		Object vertex = splitIt.next();
-		vertexMap.put(vertex, ((SplitSet)vertexMap.get(vertex)).split(vertex, splitID));
-	    }
-	    splitID++;
+	Object[] vertices = g.vertexSet().toArray();
+	HashMap index = new HashMap();
+	for (int v = 0; v < vertices.length; v++)
+	    index.put(vertices[v], new Integer(v));
+	Edge[] edges = (Edge[])g.edgeSet().toArray(new Edge[0]);
+	int[] source = new int[edges.length], target = new int[edges.length];
+	for (int e = 0; e < edges.length; e++) {
+	    source[e] = ((Integer)index.get(edges[e].getSource())).intValue();
+	    target[e] = ((Integer)index.get(edges[e].getTarget())).intValue();
 	}
-	// split by successors
-	it = g.vertexSet().iterator();
-	while (it.hasNext()) {
-	    Iterator splitIt = predecessorsOf(it.next(), g).iterator();
-	    while (splitIt.hasNext()) {
-		Object vertex = splitIt.next();
-		vertexMap.put(vertex, ((SplitSet)vertexMap.get(vertex)).split(vertex, splitID));
-	    }
-	    splitID++;
+	Partition partition = findParallelClasses(vertices.length, source, target);
+	// all vertices of a class share its set
+	Set[] classes = new Set[partition.getClassNr()];
+	for (int c = 0; c < classes.length; c++) {
+	    classes[c] = new HashSet();
+	    for (int i = 0; i < partition.getSize(c); i++)
+		classes[c].add(vertices[partition.getElement(c, i)]);
 	}
-	
+	HashMap vertexMap = new HashMap();
+	for (int v = 0; v < vertices.length; v++)
+	    vertexMap.put(vertices[v], classes[partition.getClassOf(v)]);
 	return vertexMap;
     }
 
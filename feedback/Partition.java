@@ -0,0 +1,107 @@
+package feedback;
+
+/**
+ * partition of the elements 0..n-1 into classes, refined in place: after marking some elements,
+ * split divides each class into its marked and its unmarked elements
+ * the elements of each class occupy a range of one array, with the marked ones at its start, so
+ * marking takes O(1) and splitting takes time linear in the number of marked elements
+ */
+public class Partition {
+
+    // elements ordered by class, and the position of each element in that order
+    private int[] element, position;
+    private int[] classOf;
+    // range of each class in element, and number of marked elements at its start
+    private int[] start, end, marked;
+    private int classNr;
+    // classes with marked elements
+    private int[] touched;
+    private int touchedNr = 0;
+
+    /**
+     * creates a single class holding all elements
+     */
+    public Partition(int elementNr) {
+	element = new int[elementNr];
+	position = new int[elementNr];
+	classOf = new int[elementNr];
+	start = new int[elementNr];
+	end = new int[elementNr];
+	marked = new int[elementNr];
+	touched = new int[elementNr];
+	for (int x = 0; x < elementNr; x++) {
+	    element[x] = x;
+	    position[x] = x;
+	}
+	if (elementNr > 0) {
+	    classNr = 1;
+	    end[0] = elementNr;
+	}
+    }
+
+    /**
+     * marks x for the next split; marking an element twice has no effect
+     */
+    public void mark(int x) {
+	int c = classOf[x];
+	int first = start[c] + marked[c];
+	if (position[x] < first)
+	    return;
+	// swap x with the first unmarked element of its class
+	int y = element[first];
+	element[position[x]] = y;
+	position[y] = position[x];
+	element[first] = x;
+	position[x] = first;
+	if (marked[c]++ == 0)
+	    touched[touchedNr++] = c;
+    }
+
+    /**
+     * moves the marked elements of each class into a new class, unless the whole class is
+     * marked, and unmarks all elements
+     * @return the number of new classes
+     */
+    public int split() {
+	int split = 0;
+	for (int i = 0; i < touchedNr; i++) {
+	    int c = touched[i];
+	    int markedNr = marked[c];
+	    marked[c] = 0;
+	    if (markedNr == end[c] - start[c])
+		continue;
+	    int d = classNr++;
+	    start[d] = start[c];
+	    end[d] = start[c] + markedNr;
+	    start[c] = end[d];
+	    for (int p = start[d]; p < end[d]; p++)
+		classOf[element[p]] = d;
+	    split++;
+	}
+	touchedNr = 0;
+	return split;
+    }
+
+    public int getClassNr() {
+	return classNr;
+    }
+
+    /**
+     * @return the class of x, classes being 0..getClassNr()-1
+     */
+    public int getClassOf(int x) {
+	return classOf[x];
+    }
+
+    public int getSize(int c) {
+	return end[c] - start[c];
+    }
+
+    /**
+     * @return the i-th element of class c
+     */
+    public int getElement(int c, int i) {
+	return element[start[c] + i];
+    }
+
+}
@@ -0,0 +1,107 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * bounded cache of feedback set solutions, keyed by the CanonicalGraph of a reduced kernel;
+ * solutions are kept in terms of the canonical form, i.e. as vertex labels or edge positions,
+ * so they can be mapped to any isomorphic kernel with the same form
+ * a solution found by a heuristic is replaced by a lighter one, an optimal one is never replaced
+ * once the entries hold more than capacity array elements, the least recently used ones are evicted
+ * thread-safe, so it may be shared by solvers on several threads
+ */
+public class SolutionCache {
+
+    private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+    private long capacity, size = 0;
+    private int hits = 0, misses = 0;
+
+    /**
+     * cached solution of a kernel
+     */
+    public static class Entry {
+
+	// vertex labels or edge positions
+	public final int[] solution;
+	// weight of the solution within the kernel
+	public final double weight;
+	// true if the solution is known to be optimal
+	public final boolean exact;
+
+	public Entry(int[] solution, double weight, boolean exact) {
+	    this.solution = solution;
+	    this.weight = weight;
+	    this.exact = exact;
+	}
+    }
+
+    /**
+     * @param capacity number of array elements of keys and solutions the cache may hold
+     */
+    public SolutionCache(long capacity) {
+	if (capacity < 0)
+	    throw new IllegalArgumentException("capacity = " + capacity);
+	this.capacity = capacity;
+    }
+
+    /**
+     * @return the cached solution of kernel, null if there is none; its array must not be modified
+     */
+    public synchronized Entry get(CanonicalGraph kernel) {
+	Entry entry = (Entry)entries.get(kernel);
+	if (entry == null)
+	    misses++;
+	else
+	    hits++;
+	return entry;
+    }
+
+    /**
+     * stores the solution of kernel, unless the cached one is optimal or at most as heavy
+     * @param weight weight of the solution within the kernel
+     * @param exact true if the solution is known to be optimal
+     * @return true if stored
+     */
+    public synchronized boolean put(CanonicalGraph kernel, int[] solution, double weight,
+				    boolean exact) {
+	long entrySize = kernel.size() + solution.length;
+	if (entrySize > capacity)
+	    return false;
+	Entry old = (Entry)entries.get(kernel);
+	if (old != null && (old.exact || !exact && old.weight <= weight))
+	    return false;
+	entries.put(kernel, new Entry((int[])solution.clone(), weight, exact));
+	if (old != null)
+	    size -= kernel.size() + old.solution.length;
+	size += entrySize;
+	Iterator it = entries.entrySet().iterator();
+	while (size > capacity) {
+	    Map.Entry eldest = (Map.Entry)it.next();
+	    size -= ((CanonicalGraph)eldest.getKey()).size()
+		+ ((Entry)eldest.getValue()).solution.length;
+	    it.remove();
+	}
+	return true;
+    }
+
+    public synchronized void clear() {
+	entries.clear();
+	size = 0;
+    }
+
+    /**
+     * @return the number of array elements held
+     */
+    public synchronized long getSize() {
+	return size;
+    }
+
+    public synchronized int getHits() {
+	return hits;
+    }
+
+    public synchronized int getMisses() {
+	return misses;
+    }
+
+}
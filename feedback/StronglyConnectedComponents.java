@@ -0,0 +1,161 @@
+package feedback;
+
+import java.util.*;
+
+/**
+ * strongly connected components of a CSRGraph, or of a subgraph given by vertex and edge masks,
+ * found with an iterative version of Tarjan's algorithm
+ * components are numbered in reverse topological order: edges between components
+ * lead from higher to lower numbers
+ */
+public class StronglyConnectedComponents {
+
+    private CSRGraph graph;
+    // component of each vertex, -1 for vertices not in the subgraph
+    private int[] component;
+    // vertices of component c are members[start[c]] .. members[start[c+1]-1]
+    private int[] start, members;
+    private boolean[] cyclic;
+    private int componentNr = 0;
+    // scratch space of the search
+    private int[] index, lowLink, stack, callStack, edgePos;
+    private boolean[] onStack;
+
+    public StronglyConnectedComponents(CSRGraph graph) {
+	this.graph = graph;
+	int n = graph.getVertexNr();
+	component = new int[n];
+	start = new int[n + 1];
+	members = new int[n];
+	cyclic = new boolean[n];
+	index = new int[n];
+	lowLink = new int[n];
+	stack = new int[n];
+	callStack = new int[n];
+	edgePos = new int[n];
+	onStack = new boolean[n];
+	compute(null, null);
+    }
+
+    public CSRGraph getGraph() {
+	return graph;
+    }
+
+    /**
+     * recomputes the components for the given vertices and those edges between them that are in edges
+     * @param vertices null for all vertices
+     * @param edges null for all edges
+     * @return the number of components
+     */
+    public int compute(boolean[] vertices, boolean[] edges) {
+	int n = graph.getVertexNr();
+	Arrays.fill(index, -1);
+	Arrays.fill(component, -1);
+	componentNr = 0;
+	int counter = 0, top = 0, memberNr = 0;
+	for (int root = 0; root < n; root++) {
+	    if (index[root] != -1 || vertices != null && !vertices[root])
+		continue;
+	    int depth = 0;
+	    callStack[depth++] = root;
+	    edgePos[root] = graph.getOutStart(root);
+	    index[root] = lowLink[root] = counter++;
+	    stack[top++] = root;
+	    onStack[root] = true;
+	    while (depth > 0) {
+		int v = callStack[depth - 1];
+		if (edgePos[v] < graph.getOutEnd(v)) {
+		    // next edge of v
+		    int e = edgePos[v]++;
+		    int w = graph.getTarget(e);
+		    if (edges != null && !edges[e] || vertices != null && !vertices[w])
+			continue;
+		    if (index[w] == -1) {
+			index[w] = lowLink[w] = counter++;
+			stack[top++] = w;
+			onStack[w] = true;
+			edgePos[w] = graph.getOutStart(w);
+			callStack[depth++] = w;
+		    } else if (onStack[w])
+			lowLink[v] = Math.min(lowLink[v], index[w]);
+		    continue;
+		}
+		// v is finished
+		depth--;
+		if (depth > 0) {
+		    int parent = callStack[depth - 1];
+		    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+		}
+		if (lowLink[v] == index[v]) {
+		    start[componentNr] = memberNr;
+		    int w;
+		    do {
+			w = stack[--top];
+			onStack[w] = false;
+			component[w] = componentNr;
+			members[memberNr++] = w;
+		    } while (w != v);
+		    // a single vertex is only cyclic with a loop
+		    int loop = graph.getEdge(v, v);
+		    cyclic[componentNr] = memberNr - start[componentNr] > 1
+			|| loop != -1 && (edges == null || edges[loop]);
+		    componentNr++;
+		}
+	    }
+	}
+	start[componentNr] = memberNr;
+	return componentNr;
+    }
+
+    public int getComponentNr() {
+	return componentNr;
+    }
+
+    /**
+     * @return the component of v, -1 if v was not part of the subgraph
+     */
+    public int getComponent(int v) {
+	return component[v];
+    }
+
+    public int getSize(int c) {
+	return start[c + 1] - start[c];
+    }
+
+    /**
+     * @return the i-th vertex of component c
+     */
+    public int getVertex(int c, int i) {
+	return members[start[c] + i];
+    }
+
+    /**
+     * @return true if component c contains a cycle, i.e. has more than one vertex or a loop
+     */
+    public boolean isCyclic(int c) {
+	return cyclic[c];
+    }
+
+    /**
+     * @return the cyclic components, largest first; components of equal size keep their order
+     */
+    public int[] getCyclicComponents() {
+	int count = 0;
+	for (int c = 0; c < componentNr; c++)
+	    if (cyclic[c])
+		count++;
+	// counting sort by size, descending
+	int[] bucket = new int[graph.getVertexNr() + 2];
+	for (int c = 0; c < componentNr; c++)
+	    if (cyclic[c])
+		bucket[graph.getVertexNr() - getSize(c) + 1]++;
+	for (int i = 1; i < bucket.length; i++)
+	    bucket[i] += bucket[i - 1];
+	int[] result = new int[count];
+	for (int c = 0; c < componentNr; c++)
+	    if (cyclic[c])
+		result[bucket[graph.getVertexNr() - getSize(c)]++] = c;
+	return result;
+    }
+
+}
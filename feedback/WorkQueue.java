@@ -0,0 +1,141 @@
+package feedback;
+
+/**
+ * FIFO queue of objects awaiting reduction, replacing a set: each element knows the queue
+ * it is in and the stamp of its entry, so adding an element that is already queued is
+ * ignored and removing an element only invalidates its entry, all without hashing
+ * invalid entries are skipped when they reach the head of the queue
+ */
+public class WorkQueue {
+
+    /**
+     * object that can be put into a WorkQueue; it can be in only one queue at a time
+     */
+    public interface Element {
+	/**
+	 * @return the queue the element was last put into
+	 */
+	public WorkQueue getQueue();
+	/**
+	 * @return the stamp of the entry of the element, 0 if it is not queued
+	 */
+	public int getQueueStamp();
+	public void setQueueEntry(WorkQueue queue, int stamp);
+    }
+
+    // circular buffer of the entries and their stamps
+    private Element[] elements = new Element[16];
+    private int[] stamps = new int[16];
+    private int head = 0, entryNr = 0;
+    // number of valid entries
+    private int size = 0;
+    private int lastStamp = 0;
+
+    /**
+     * @return true if element was not queued yet
+     */
+    public boolean add(Element element) {
+	if (contains(element))
+	    return false;
+	if (entryNr == elements.length)
+	    grow();
+	if (lastStamp == Integer.MAX_VALUE)
+	    restamp();
+	int i = (head + entryNr) % elements.length;
+	elements[i] = element;
+	stamps[i] = ++lastStamp;
+	element.setQueueEntry(this, lastStamp);
+	entryNr++;
+	size++;
+	return true;
+    }
+
+    /**
+     * @return true if element was queued
+     */
+    public boolean remove(Element element) {
+	if (!contains(element))
+	    return false;
+	element.setQueueEntry(this, 0);
+	size--;
+	return true;
+    }
+
+    public boolean contains(Element element) {
+	return element.getQueue() == this && element.getQueueStamp() != 0;
+    }
+
+    /**
+     * @return the element queued longest
+     * @throws RuntimeException if the queue is empty
+     */
+    public Object removeAny() {
+	while (entryNr > 0) {
+	    Element element = elements[head];
+	    int stamp = stamps[head];
+	    elements[head] = null;
+	    head = (head + 1) % elements.length;
+	    entryNr--;
+	    if (element.getQueue() == this && element.getQueueStamp() == stamp) {
+		element.setQueueEntry(this, 0);
+		size--;
+		return element;
+	    }
+	}
+	throw new RuntimeException("queue is empty");
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public void clear() {
+	while (entryNr > 0) {
+	    Element element = elements[head];
+	    if (element.getQueue() == this)
+		element.setQueueEntry(this, 0);
+	    elements[head] = null;
+	    head = (head + 1) % elements.length;
+	    entryNr--;
+	}
+	head = 0;
+	size = 0;
+    }
+
+    private void grow() {
+	Element[] newElements = new Element[2 * elements.length];
+	int[] newStamps = new int[newElements.length];
+	for (int i = 0; i < entryNr; i++) {
+	    newElements[i] = elements[(head + i) % elements.length];
+	    newStamps[i] = stamps[(head + i) % elements.length];
+	}
+	elements = newElements;
+	stamps = newStamps;
+	head = 0;
+    }
+
+    /**
+     * renumbers the valid entries from 1 and drops the others, before the stamps overflow
+     */
+    private void restamp() {
+	int valid = 0;
+	for (int i = 0; i < entryNr; i++) {
+	    int j = (head + i) % elements.length;
+	    Element element = elements[j];
+	    elements[j] = null;
+	    if (element.getQueue() == this && element.getQueueStamp() == stamps[j]) {
+		int k = (head + valid) % elements.length;
+		elements[k] = element;
+		stamps[k] = ++valid;
+		element.setQueueEntry(this, valid);
+	    }
+	}
+	entryNr = valid;
+	lastStamp = valid;
+    }
+
+}
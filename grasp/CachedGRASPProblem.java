@@ -0,0 +1,32 @@
+package grasp;
+
+/**
+ * GRASP-problem whose solutions can be kept in a cache, as the same problem is solved
+ * again and again; the solver returns a cached solution that is known to be optimal, and
+ * otherwise offers the solution it found to the cache, which keeps the lighter one
+ * the solver calls these methods on the problem returned by prepareLookup only
+ */
+public interface CachedGRASPProblem extends GRASPProblem {
+
+    /**
+     * does not modify the problem
+     * @return a problem equal to this one on which lookupSolution, storeSolution and solveExactly
+     * can be called one after another without repeating their preparation, e.g. the reduction
+     * to the kernel the cache is keyed by; may be the problem itself
+     */
+    public CachedGRASPProblem prepareLookup();
+
+    /**
+     * does not modify the problem
+     * @param exact if true, only a solution known to be optimal is returned
+     * @return a cached solution, or null if there is none
+     */
+    public Object lookupSolution(boolean exact);
+
+    /**
+     * offers a solution of the problem to the cache
+     * @param exact true if the solution is known to be optimal
+     */
+    public void storeSolution(Object solution, boolean exact);
+
+}
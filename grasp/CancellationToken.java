@@ -0,0 +1,21 @@
+package grasp;
+
+/**
+ * allows a running solver to be stopped from another thread
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * requests the solver to stop; takes effect after the current iteration
+     */
+    public void cancel() {
+	cancelled = true;
+    }
+
+    public boolean isCancelled() {
+	return cancelled;
+    }
+
+}
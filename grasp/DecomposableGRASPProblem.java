@@ -0,0 +1,23 @@
+package grasp;
+
+/**
+ * GRASP-problem whose remaining part may fall apart into independent subproblems during
+ * construction; the solver then finishes each part on its own, so rcl construction only
+ * looks at the objects of one part
+ */
+public interface DecomposableGRASPProblem extends GRASPProblem {
+
+    /**
+     * called after each selection; may be cheap most of the time by only looking
+     * for parts now and then
+     * @return the independent parts of the remaining problem, or null if it has not split
+     * the parts may be solved in any order; their solutions must be passed to addPartSolution
+     */
+    public GRASPProblem[] split();
+
+    /**
+     * adds the solution of a part returned by split to the solution
+     */
+    public void addPartSolution(Object solution);
+
+}
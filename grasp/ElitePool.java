@@ -0,0 +1,103 @@
+package grasp;
+
+import java.util.*;
+
+/**
+ * pool of good and diverse solutions for path relinking
+ * a solution closer than minDistance to an elite solution may only replace that one;
+ * otherwise, once the pool is full, it replaces the most similar worse solution
+ */
+public class ElitePool {
+
+    private SolutionDistance metric;
+    private double minDistance;
+    private Object[] solutions;
+    private double[] weights;
+    private int size = 0;
+
+    /**
+     * @param capacity maximal number of solutions kept
+     * @param minDistance solutions closer than this are considered similar
+     */
+    public ElitePool(int capacity, double minDistance, SolutionDistance metric) {
+	if (capacity < 1)
+	    throw new IllegalArgumentException("capacity = " + capacity);
+	this.metric = metric;
+	this.minDistance = minDistance;
+	solutions = new Object[capacity];
+	weights = new double[capacity];
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public Object getSolution(int i) {
+	return solutions[i];
+    }
+
+    public double getWeight(int i) {
+	return weights[i];
+    }
+
+    /**
+     * @return a random elite solution, null if the pool is empty
+     */
+    public Object select(Random rand) {
+	if (size == 0)
+	    return null;
+	return solutions[rand.nextInt(size)];
+    }
+
+    /**
+     * offers a solution to the pool; the solution must not be changed afterwards
+     * @return true if it was added
+     */
+    public boolean offer(Object solution, double weight) {
+	double[] distance = new double[size];
+	int closest = -1;
+	for (int i = 0; i < size; i++) {
+	    distance[i] = metric.distance(solution, solutions[i]);
+	    if (closest == -1 || distance[i] < distance[closest])
+		closest = i;
+	}
+	// too similar to an elite solution?
+	if (closest != -1 && distance[closest] < minDistance) {
+	    if (weight >= weights[closest])
+		return false;
+	    set(closest, solution, weight);
+	    return true;
+	}
+	if (size < solutions.length) {
+	    set(size++, solution, weight);
+	    return true;
+	}
+	// replace the most similar solution among the worse ones
+	int replace = -1;
+	for (int i = 0; i < size; i++)
+	    if (weights[i] > weight && (replace == -1 || distance[i] < distance[replace]))
+		replace = i;
+	if (replace == -1)
+	    return false;
+	set(replace, solution, weight);
+	return true;
+    }
+
+    private void set(int i, Object solution, double weight) {
+	solutions[i] = solution;
+	weights[i] = weight;
+    }
+
+    /**
+     * @return the number of elements contained in exactly one of the sets
+     */
+    public static double symmetricDifference(Set s1, Set s2) {
+	int common = 0;
+	Iterator it = s1.iterator();
+	while (it.hasNext())
+	    if (s2.contains(it.next()))
+		common++;
+	return s1.size() + s2.size() - 2 * common;
+    }
+
+}
@@ -0,0 +1,15 @@
+package grasp;
+
+/**
+ * GRASP-problem that can be solved to optimality when it is small enough;
+ * the solver then returns that solution instead of sampling
+ */
+public interface ExactGRASPProblem extends GRASPProblem {
+
+    /**
+     * does not modify the problem
+     * @return an optimal solution, or null if the problem is too large to be solved exactly
+     */
+    public Object solveExactly();
+
+}
@@ -0,0 +1,15 @@
+package grasp;
+
+/**
+ * gets informed by the GRASPSolver about the progress of an anytime search
+ */
+public interface GRASPProgressListener {
+
+    /**
+     * called after every completed iteration
+     * @param iterations number of iterations completed so far
+     * @param bestWeight weight of the best solution found so far
+     */
+    public void progress(int iterations, double bestWeight);
+
+}
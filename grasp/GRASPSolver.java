@@ -1,6 +1,7 @@
 package grasp;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * performs the problem-independent GRASP work
@@ -9,9 +10,22 @@ public class GRASPSolver {
 
     private RCLConstructor rclConstructor;
     protected Random rand = new Random();
+    // path relinking, disabled if eliteSize == 0
+    private int eliteSize = 0;
+    private double eliteDistance = 1;
+    // finish the parts of decomposable problems separately
+    private boolean splitting = true;
+    // solve problems implementing ExactGRASPProblem exactly if they are small enough
+    private boolean exact = true;
+    // keep the statistics of a reactive rcl constructor from one solve for the next
+    private boolean carryStatistics = false;
+    private ReactiveRCLConstructor lastStatistics = null;
 
+    /**
+     * uses a ReactiveRCLConstructor, which tunes the rcl percentage during each solve
+     */
     public GRASPSolver() {
-	this(new WeightPercentageRCLConstructor(0.8));
+	this(new ReactiveRCLConstructor());
     }
 
     public GRASPSolver(RCLConstructor rclConstructor) {
@@ -22,27 +36,447 @@ public class GRASPSolver {
 	return rclConstructor;
     }
 
+    /**
+     * enables path relinking for problems implementing RelinkableGRASPProblem: each new solution
+     * is relinked with a random solution from a pool of elite solutions
+     * @param eliteSize size of the elite pool, 0 disables path relinking
+     * @param minDistance solutions closer than this are considered similar by the pool
+     */
+    public void setPathRelinking(int eliteSize, double minDistance) {
+	if (eliteSize < 0)
+	    throw new IllegalArgumentException("eliteSize = " + eliteSize);
+	this.eliteSize = eliteSize;
+	this.eliteDistance = minDistance;
+    }
+
+    /**
+     * enables or disables splitting problems implementing DecomposableGRASPProblem into
+     * independent parts during construction; enabled by default
+     */
+    public void setSplitting(boolean splitting) {
+	this.splitting = splitting;
+    }
+
+    /**
+     * enables or disables solving small problems implementing ExactGRASPProblem exactly
+     * instead of sampling; enabled by default
+     */
+    public void setExact(boolean exact) {
+	this.exact = exact;
+    }
+
+    /**
+     * @param carryStatistics if true, a reactive rcl constructor keeps the statistics of each
+     * solve for the following ones; otherwise every solve starts from the initial probabilities,
+     * so its result does not depend on earlier solves; disabled by default
+     */
+    public void setCarryStatistics(boolean carryStatistics) {
+	this.carryStatistics = carryStatistics;
+    }
+
+    /**
+     * @return the per-alpha statistics of the last solve that ran GRASP iterations, null if
+     * there was none or the rcl constructor is not reactive
+     */
+    public ReactiveRCLConstructor getLastStatistics() {
+	return lastStatistics;
+    }
+
+    /**
+     * @return the rcl constructor for a solve or a worker: a copy of a reactive constructor,
+     * so the statistics of the solve are kept apart, the constructor itself otherwise
+     */
+    private RCLConstructor startSolve() {
+	if (rclConstructor instanceof ReactiveRCLConstructor)
+	    return ((ReactiveRCLConstructor)rclConstructor).copy();
+	return rclConstructor;
+    }
+
+    /**
+     * collects the statistics of the constructors used by a solve, in the given order,
+     * and adds them to the reactive rcl constructor if statistics are carried
+     */
+    private void finishSolve(RCLConstructor[] constructors) {
+	if (!(rclConstructor instanceof ReactiveRCLConstructor))
+	    return;
+	ReactiveRCLConstructor statistics = ((ReactiveRCLConstructor)rclConstructor).copy();
+	for (int i = 0; i < constructors.length; i++)
+	    statistics.merge((ReactiveRCLConstructor)constructors[i]);
+	if (carryStatistics)
+	    ((ReactiveRCLConstructor)rclConstructor).merge(statistics);
+	lastStatistics = statistics;
+    }
+
+    /**
+     * @return an optimal solution if gp is small enough to be solved exactly, null otherwise
+     */
+    private Object solveExactly(GRASPProblem gp) {
+	if (!exact || !(gp instanceof ExactGRASPProblem))
+	    return null;
+	return ((ExactGRASPProblem)gp).solveExactly();
+    }
+
+    /**
+     * @return the problem the cache and exact solving work on: prepared once per solve, so the
+     * problem is reduced only once for both
+     */
+    private GRASPProblem prepareLookup(GRASPProblem gp) {
+	if (!(gp instanceof CachedGRASPProblem))
+	    return gp;
+	return ((CachedGRASPProblem)gp).prepareLookup();
+    }
+
+    /**
+     * @return a cached optimal solution of gp, or an optimal solution if gp is small enough to
+     * be solved exactly, null otherwise
+     */
+    private Object findKnownSolution(GRASPProblem gp) {
+	if (gp instanceof CachedGRASPProblem) {
+	    Object cachedSolution = ((CachedGRASPProblem)gp).lookupSolution(true);
+	    if (cachedSolution != null)
+		return cachedSolution;
+	}
+	Object exactSolution = solveExactly(gp);
+	if (exactSolution != null && gp instanceof CachedGRASPProblem)
+	    ((CachedGRASPProblem)gp).storeSolution(exactSolution, true);
+	return exactSolution;
+    }
+
+    /**
+     * offers a solution found by sampling to the cache of gp, if it has one
+     * @return the lighter of solution and the cached solution
+     */
+    private Object storeSolution(GRASPProblem gp, Object solution) {
+	if (solution == null || !(gp instanceof CachedGRASPProblem))
+	    return solution;
+	CachedGRASPProblem cached = (CachedGRASPProblem)gp;
+	Object cachedSolution = cached.lookupSolution(false);
+	if (cachedSolution != null
+	    && gp.getSolutionWeight(cachedSolution) < gp.getSolutionWeight(solution))
+	    return cachedSolution;
+	cached.storeSolution(solution, false);
+	return solution;
+    }
+
+    /**
+     * @return a new elite pool, or null if gp should not be relinked
+     */
+    private ElitePool createElitePool(GRASPProblem gp) {
+	if (eliteSize == 0 || !(gp instanceof RelinkableGRASPProblem))
+	    return null;
+	return new ElitePool(eliteSize, eliteDistance, (RelinkableGRASPProblem)gp);
+    }
+
+    /**
+     * relinks the solution of gp with a random elite solution and offers both results to the pool
+     * @return the better of the solution of gp and the relinked solution
+     */
+    private Best relink(GRASPProblem gp, double weight, ElitePool pool, Random rand, int iteration) {
+	Object solution = gp.getSolution();
+	Best best = new Best(solution, weight, iteration);
+	Object elite = pool.select(rand);
+	if (elite != null) {
+	    Object relinked = ((RelinkableGRASPProblem)gp).relink(solution, elite);
+	    if (relinked != null) {
+		double relinkedWeight = gp.getSolutionWeight(relinked);
+		pool.offer(relinked, relinkedWeight);
+		if (relinkedWeight < weight)
+		    best = new Best(relinked, relinkedWeight, iteration);
+	    }
+	}
+	pool.offer(solution, weight);
+	return best;
+    }
+
+    /**
+     * provides a fresh copy of a problem for each iteration
+     * undoable problems are cloned only once, and the copy is rewound between iterations
+     */
+    private static class ProblemSupply {
+
+	private GRASPProblem gp;
+	private UndoableGRASPProblem working = null;
+	private int mark;
+
+	public ProblemSupply(GRASPProblem gp) {
+	    this.gp = gp;
+	}
+
+	public GRASPProblem next() {
+	    if (!(gp instanceof UndoableGRASPProblem))
+		return (GRASPProblem)gp.clone();
+	    if (working == null) {
+		working = (UndoableGRASPProblem)gp.clone();
+		mark = working.mark();
+	    } else
+		working.undo(mark);
+	    return working;
+	}
+    }
+
     /**
      * @param iterations number of random solutions to check
      * @return the best found solution
      */
     public Object solve(GRASPProblem gp, int iterations) {
+	GRASPProblem lookup = prepareLookup(gp);
+	Object knownSolution = findKnownSolution(lookup);
+	if (knownSolution != null)
+	    return knownSolution;
 
 	Object bestSolution = null;
 	double bestSolutionWeight = 0;
+	ProblemSupply supply = new ProblemSupply(gp);
+	ElitePool pool = createElitePool(gp);
+	RCLConstructor constructor = startSolve();
 
 	for (int i = 0; i < iterations; i++) {
-	    GRASPProblem clone = (GRASPProblem)gp.clone();
-	    double newWeight = iterateGRASP(clone);
+	    GRASPProblem clone = supply.next();
+	    double newWeight = iterateGRASP(clone, rand, constructor);
 	    // Log.debug("weight=" + newWeight);
+	    if (pool != null) {
+		Best relinked = relink(clone, newWeight, pool, rand, i);
+		if (bestSolution == null || relinked.weight < bestSolutionWeight) {
+		    bestSolution = relinked.solution;
+		    bestSolutionWeight = relinked.weight;
+		}
+	    }
 	    // better result than old one?
-	    if (bestSolution == null || newWeight < bestSolutionWeight) {
+	    else if (bestSolution == null || newWeight < bestSolutionWeight) {
 		bestSolution = clone.getSolution();
 		bestSolutionWeight = newWeight;
 	    }
 	}
+	finishSolve(new RCLConstructor[] { constructor });
 
-	return bestSolution;
+	return storeSolution(lookup, bestSolution);
+    }
+
+    /**
+     * use as targetWeight to search until the deadline or cancellation
+     */
+    public static final double NO_TARGET = Double.NEGATIVE_INFINITY;
+
+    /**
+     * use as deadline to search until the target weight is reached or cancellation
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * anytime search: iterates until the deadline has passed, a solution of weight <= targetWeight
+     * has been found or the search is cancelled; the stop conditions are checked between iterations
+     * and at least one iteration is completed unless the search gets cancelled before
+     * @param deadline time in ms as given by System.currentTimeMillis(), or NO_DEADLINE
+     * @param targetWeight weight that is good enough, or NO_TARGET
+     * @param token allows to cancel the search from another thread, may be null
+     * @param listener gets informed after each iteration, may be null
+     * @return the best found solution, null if cancelled before the first iteration completed
+     */
+    public Object solve(GRASPProblem gp, long deadline, double targetWeight,
+			CancellationToken token, GRASPProgressListener listener) {
+	GRASPProblem lookup = prepareLookup(gp);
+	Object knownSolution = findKnownSolution(lookup);
+	if (knownSolution != null) {
+	    if (listener != null)
+		listener.progress(1, gp.getSolutionWeight(knownSolution));
+	    return knownSolution;
+	}
+
+	Object bestSolution = null;
+	double bestSolutionWeight = 0;
+	int iterations = 0;
+	ProblemSupply supply = new ProblemSupply(gp);
+	ElitePool pool = createElitePool(gp);
+	RCLConstructor constructor = startSolve();
+
+	while (token == null || !token.isCancelled()) {
+	    // only stop once we have something to return
+	    if (bestSolution != null
+		&& (bestSolutionWeight <= targetWeight || System.currentTimeMillis() >= deadline))
+		break;
+	    GRASPProblem clone = supply.next();
+	    double newWeight = iterateGRASP(clone, rand, constructor);
+	    iterations++;
+	    if (pool != null) {
+		Best relinked = relink(clone, newWeight, pool, rand, iterations);
+		if (bestSolution == null || relinked.weight < bestSolutionWeight) {
+		    bestSolution = relinked.solution;
+		    bestSolutionWeight = relinked.weight;
+		}
+	    }
+	    // better result than old one?
+	    else if (bestSolution == null || newWeight < bestSolutionWeight) {
+		bestSolution = clone.getSolution();
+		bestSolutionWeight = newWeight;
+	    }
+	    if (listener != null)
+		listener.progress(iterations, bestSolutionWeight);
+	}
+	finishSolve(new RCLConstructor[] { constructor });
+
+	return storeSolution(lookup, bestSolution);
+    }
+
+    /**
+     * best solution found so far by the workers of a parallel solve
+     */
+    private static class Best {
+
+	public final Object solution;
+	public final double weight;
+	public final int iteration;
+
+	public Best(Object solution, double weight, int iteration) {
+	    this.solution = solution;
+	    this.weight = weight;
+	    this.iteration = iteration;
+	}
+
+	/**
+	 * ties are broken by iteration number, so the result does not depend on thread timing
+	 */
+	public boolean betterThan(Best best) {
+	    return best == null || weight < best.weight
+		|| weight == best.weight && iteration < best.iteration;
+	}
+    }
+
+    /**
+     * performs every threads-th iteration on its own clone of the problem;
+     * with path relinking, each worker keeps its own elite pool, and a reactive
+     * rcl constructor is copied for each worker
+     */
+    private class Worker extends Thread {
+
+	private ProblemSupply supply;
+	private ElitePool pool;
+	private RCLConstructor constructor;
+	private Random workerRand;
+	private int first, iterations, step;
+	private AtomicReference best;
+	private Throwable failure = null;
+
+	public Worker(GRASPProblem gp, Random workerRand, int first, int iterations, int step,
+		      AtomicReference best) {
+	    this.supply = new ProblemSupply(gp);
+	    this.pool = createElitePool(gp);
+	    this.constructor = startSolve();
+	    this.workerRand = workerRand;
+	    this.first = first;
+	    this.iterations = iterations;
+	    this.step = step;
+	    this.best = best;
+	}
+
+	public void run() {
+	    try {
+		for (int i = first; i < iterations; i += step) {
+		    GRASPProblem clone = supply.next();
+		    double newWeight = iterateGRASP(clone, workerRand, constructor);
+		    if (pool != null)
+			offer(relink(clone, newWeight, pool, workerRand, i));
+		    else
+			offer(new Best(clone.getSolution(), newWeight, i));
+		}
+	    } catch (Throwable e) {
+		// also errors, which would otherwise end the worker silently
+		failure = e;
+	    }
+	}
+
+	/**
+	 * lock-free update of the shared best solution
+	 */
+	private void offer(Best candidate) {
+	    while (true) {
+		Best current = (Best)best.get();
+		if (!candidate.betterThan(current) || best.compareAndSet(current, candidate))
+		    return;
+	    }
+	}
+
+	public Throwable getFailure() {
+	    return failure;
+	}
+
+	public RCLConstructor getConstructor() {
+	    return constructor;
+	}
+    }
+
+    /**
+     * performs the iterations on several threads; each worker operates on its own clone of gp
+     * and draws from its own random stream, split off from seed; a single worker runs on the
+     * calling thread
+     * the result is reproducible for a given seed and number of threads, unless statistics
+     * are carried from earlier solves
+     * @param iterations number of random solutions to check
+     * @param threads number of worker threads
+     * @param seed seed from which the random streams of the workers are derived
+     * @return the best found solution
+     */
+    public Object solve(GRASPProblem gp, int iterations, int threads, long seed) {
+	if (threads < 1)
+	    throw new IllegalArgumentException("threads = " + threads);
+	threads = Math.max(1, Math.min(threads, iterations));
+	GRASPProblem lookup = prepareLookup(gp);
+	Object knownSolution = findKnownSolution(lookup);
+	if (knownSolution != null)
+	    return knownSolution;
+
+	AtomicReference best = new AtomicReference();
+	Worker[] workers = new Worker[threads];
+	// clone on the calling thread, so workers never touch gp itself
+	for (int w = 0; w < threads; w++)
+	    workers[w] = new Worker((GRASPProblem)gp.clone(), new Random(streamSeed(seed, w)),
+				    w, iterations, threads, best);
+	if (threads == 1)
+	    workers[0].run();
+	else
+	    for (int w = 0; w < threads; w++)
+		workers[w].start();
+	for (int w = 0; w < threads; w++) {
+	    try {
+		if (threads > 1)
+		    workers[w].join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException("interrupted while waiting for GRASP workers");
+	    }
+	    if (workers[w].getFailure() != null)
+		rethrow(workers[w].getFailure());
+	}
+	// merge in worker order, to stay reproducible
+	RCLConstructor[] constructors = new RCLConstructor[threads];
+	for (int w = 0; w < threads; w++)
+	    constructors[w] = workers[w].getConstructor();
+	finishSolve(constructors);
+
+	Best result = (Best)best.get();
+	return result == null ? null : storeSolution(lookup, result.solution);
+    }
+
+    /**
+     * rethrows the failure of a worker thread on the calling thread; errors and runtime
+     * exceptions are thrown as they are, anything else wrapped in a RuntimeException
+     */
+    public static void rethrow(Throwable failure) {
+	if (failure instanceof Error)
+	    throw (Error)failure;
+	if (failure instanceof RuntimeException)
+	    throw (RuntimeException)failure;
+	throw new RuntimeException(failure);
+    }
+
+    /**
+     * splits independent random streams off a single seed, as done by SplitMix64
+     * @return the seed for the random stream of the given worker
+     */
+    public static long streamSeed(long seed, int worker) {
+	long z = seed + (worker + 1) * 0x9E3779B97F4A7C15L;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
     }
 
     /**
@@ -50,8 +484,43 @@ public class GRASPSolver {
      * @return weight of the solution found as given by gp.getSolutionWeight()
      */
     protected double iterateGRASP(GRASPProblem gp) {
+	return iterateGRASP(gp, rand);
+    }
+
+    /**
+     * performs a single GRASP iteration using the given random generator
+     * @return weight of the solution found as given by gp.getSolutionWeight()
+     */
+    protected double iterateGRASP(GRASPProblem gp, Random rand) {
+	return iterateGRASP(gp, rand, getRCLConstructor());
+    }
+
+    /**
+     * performs a single GRASP iteration using the given random generator and rcl constructor;
+     * a reactive constructor gets informed about the solution found
+     * @return weight of the solution found as given by gp.getSolutionWeight()
+     */
+    protected double iterateGRASP(GRASPProblem gp, Random rand, RCLConstructor constructor) {
+	if (!(constructor instanceof ReactiveRCLConstructor))
+	    return construct(gp, rand, constructor);
+	ReactiveRCLConstructor reactive = (ReactiveRCLConstructor)constructor;
+	reactive.startIteration(rand);
+	double weight = construct(gp, rand, constructor);
+	reactive.solutionFound(weight);
+	return weight;
+    }
+
+    /**
+     * constructs a solution and performs local optimization
+     * @return weight of the solution found as given by gp.getSolutionWeight()
+     */
+    private double construct(GRASPProblem gp, Random rand, RCLConstructor constructor) {
+	if (gp instanceof IndexedGRASPProblem && constructor instanceof IndexedRCLConstructor)
+	    return iterateIndexed((IndexedGRASPProblem)gp, rand, (IndexedRCLConstructor)constructor);
 	while (true) {
-	    Set rclSet = getRCLConstructor().constructRCL(gp.getGreedyObjects());
+	    if (constructParts(gp, rand, constructor))
+		break;
+	    Set rclSet = constructor.constructRCL(gp.getGreedyObjects());
 	    // are we done?
 	    if (rclSet.size() == 0)
 		break;
@@ -63,4 +532,43 @@ public class GRASPSolver {
 	gp.optimizeLocal();
 	return gp.getSolutionWeight();
     }
+
+    /**
+     * if gp has fallen apart, constructs a solution for each part and adds it to gp;
+     * the parts are solved one after the other with the same random generator
+     * @return true if gp was split, so construction is complete
+     */
+    private boolean constructParts(GRASPProblem gp, Random rand, RCLConstructor constructor) {
+	if (!splitting || !(gp instanceof DecomposableGRASPProblem))
+	    return false;
+	DecomposableGRASPProblem decomposable = (DecomposableGRASPProblem)gp;
+	GRASPProblem[] parts = decomposable.split();
+	if (parts == null)
+	    return false;
+	for (int i = 0; i < parts.length; i++) {
+	    construct(parts[i], rand, constructor);
+	    decomposable.addPartSolution(parts[i].getSolution());
+	}
+	return true;
+    }
+
+    /**
+     * performs a single GRASP iteration, taking the rcl from the greedy heap of gp
+     * @return weight of the solution found as given by gp.getSolutionWeight()
+     */
+    protected double iterateIndexed(IndexedGRASPProblem gp, Random rand, IndexedRCLConstructor constructor) {
+	int[] rcl = new int[gp.getGreedyObjectNr()];
+	while (true) {
+	    if (constructParts(gp, rand, constructor))
+		break;
+	    int rclSize = constructor.constructRCL(gp.getGreedyHeap(), rcl);
+	    // are we done?
+	    if (rclSize == 0)
+		break;
+	    gp.selectGreedyObject(gp.getGreedyObject(rcl[rand.nextInt(rclSize)]));
+	}
+	// found a solution - now do local optimization
+	gp.optimizeLocal();
+	return gp.getSolutionWeight();
+    }
 }
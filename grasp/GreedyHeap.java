@@ -0,0 +1,177 @@
+package grasp;
+
+/**
+ * indexed max-heap of greedy weights for objects numbered 0..capacity-1
+ * allows weights of single objects to be updated in O(log n) and returns all objects
+ * above a threshold in time proportional to their number
+ */
+public class GreedyHeap implements Cloneable {
+
+    // heap[0..size-1] are object indices, position[index] is their place in heap or -1
+    private int[] heap, position;
+    private double[] weight;
+    private int size = 0;
+    // scratch space for collect
+    private int[] stack;
+
+    public GreedyHeap(int capacity) {
+	heap = new int[capacity];
+	position = new int[capacity];
+	weight = new double[capacity];
+	stack = new int[capacity + 1];
+	for (int i = 0; i < capacity; i++)
+	    position[i] = -1;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public boolean contains(int index) {
+	return position[index] >= 0;
+    }
+
+    public double getWeight(int index) {
+	return weight[index];
+    }
+
+    /**
+     * inserts index with the given weight, or changes its weight if already contained
+     */
+    public void update(int index, double newWeight) {
+	int pos = position[index];
+	if (pos < 0) {
+	    weight[index] = newWeight;
+	    heap[size] = index;
+	    position[index] = size;
+	    siftUp(size++);
+	} else {
+	    double oldWeight = weight[index];
+	    weight[index] = newWeight;
+	    if (newWeight > oldWeight)
+		siftUp(pos);
+	    else if (newWeight < oldWeight)
+		siftDown(pos);
+	}
+    }
+
+    /**
+     * removes index from the heap if contained
+     */
+    public void remove(int index) {
+	int pos = position[index];
+	if (pos < 0)
+	    return;
+	position[index] = -1;
+	int last = heap[--size];
+	if (pos == size)
+	    return;
+	heap[pos] = last;
+	position[last] = pos;
+	siftUp(pos);
+	siftDown(position[last]);
+    }
+
+    /**
+     * removes all elements
+     */
+    public void clear() {
+	for (int i = 0; i < size; i++)
+	    position[heap[i]] = -1;
+	size = 0;
+    }
+
+    /**
+     * @return the index with maximal weight, -1 if empty
+     */
+    public int max() {
+	return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * @return the maximal weight; only valid if not empty
+     */
+    public double maxWeight() {
+	return weight[heap[0]];
+    }
+
+    /**
+     * collects all indices with weight >= threshold; only visits the part of the heap above threshold
+     * @param result must have room for size() elements
+     * @return the number of indices written to result
+     */
+    public int collect(double threshold, int[] result) {
+	if (size == 0 || weight[heap[0]] < threshold)
+	    return 0;
+	int found = 0, top = 0;
+	stack[top++] = 0;
+	while (top > 0) {
+	    int pos = stack[--top];
+	    result[found++] = heap[pos];
+	    int child = 2 * pos + 1;
+	    if (child < size && weight[heap[child]] >= threshold)
+		stack[top++] = child;
+	    child++;
+	    if (child < size && weight[heap[child]] >= threshold)
+		stack[top++] = child;
+	}
+	return found;
+    }
+
+    private void siftUp(int pos) {
+	int index = heap[pos];
+	double w = weight[index];
+	while (pos > 0) {
+	    int parent = (pos - 1) / 2;
+	    if (weight[heap[parent]] >= w)
+		break;
+	    heap[pos] = heap[parent];
+	    position[heap[pos]] = pos;
+	    pos = parent;
+	}
+	heap[pos] = index;
+	position[index] = pos;
+    }
+
+    private void siftDown(int pos) {
+	int index = heap[pos];
+	double w = weight[index];
+	while (true) {
+	    int child = 2 * pos + 1;
+	    if (child >= size)
+		break;
+	    if (child + 1 < size && weight[heap[child + 1]] > weight[heap[child]])
+		child++;
+	    if (weight[heap[child]] <= w)
+		break;
+	    heap[pos] = heap[child];
+	    position[heap[pos]] = pos;
+	    pos = child;
+	}
+	heap[pos] = index;
+	position[index] = pos;
+    }
+
+    /**
+     * @return a deep-copy of itself
+     */
+    public Object clone() {
+	GreedyHeap clone;
+	try {
+	    clone = (GreedyHeap)super.clone();
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    return null;
+	}
+	clone.heap = (int[])heap.clone();
+	clone.position = (int[])position.clone();
+	clone.weight = (double[])weight.clone();
+	clone.stack = new int[stack.length];
+	return clone;
+    }
+
+}
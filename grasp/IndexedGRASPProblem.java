@@ -0,0 +1,25 @@
+package grasp;
+
+/**
+ * GRASP-problem whose greedy objects are numbered 0..getGreedyObjectNr()-1
+ * the problem keeps the greedy weights of its available objects in a GreedyHeap and updates
+ * only those whose weight changed, so the rcl can be found without scanning all objects
+ */
+public interface IndexedGRASPProblem extends GRASPProblem {
+
+    /**
+     * @return an upper bound for the indices of greedy objects
+     */
+    public int getGreedyObjectNr();
+
+    /**
+     * @return the heap containing exactly the objects available for greedy-selection
+     */
+    public GreedyHeap getGreedyHeap();
+
+    /**
+     * @return the greedy object with the given index
+     */
+    public GreedyObject getGreedyObject(int index);
+
+}
@@ -0,0 +1,22 @@
+package grasp;
+
+/**
+ * constructs the rcl for greedy selection from a GreedyHeap or an array of weights
+ */
+public interface IndexedRCLConstructor extends RCLConstructor {
+
+    /**
+     * @param heap the greedy weights of the available objects
+     * @param rcl receives the indices of the rcl, must have room for heap.size() elements
+     * @return the size of the rcl
+     */
+    public int constructRCL(GreedyHeap heap, int[] rcl);
+
+    /**
+     * @param weights the greedy weights of the available objects 0..size-1
+     * @param rcl receives the indices of the rcl in ascending order, must have room for size elements
+     * @return the size of the rcl
+     */
+    public int constructRCL(double[] weights, int size, int[] rcl);
+
+}
@@ -0,0 +1,195 @@
+package grasp;
+
+import java.util.*;
+
+/**
+ * reactive GRASP: each iteration uses a percentage (alpha) drawn from a fixed set of values,
+ * as done by WeightPercentageRCLConstructor; the probabilities of the values are updated
+ * periodically, favouring those whose solutions have a low average weight
+ * the solver must call startIteration before and solutionFound after each iteration
+ */
+public class ReactiveRCLConstructor implements IndexedRCLConstructor {
+
+    public static final double[] DEFAULT_ALPHAS = { 0.5, 0.6, 0.7, 0.8, 0.9, 1.0 };
+
+    private double[] alphas;
+    private WeightPercentageRCLConstructor[] constructors;
+    private double[] probabilities;
+    // statistics per alpha
+    private int[] uses;
+    private double[] weightSum, bestWeight;
+    // iterations between probability updates, and exponent amplifying differences
+    private int updateInterval;
+    private double amplification;
+    private int iterations = 0;
+    // alpha used by the running iteration
+    private int current = -1;
+
+    public ReactiveRCLConstructor() {
+	this(DEFAULT_ALPHAS, 20, 10);
+    }
+
+    /**
+     * @param alphas the percentages to choose from
+     * @param updateInterval number of iterations between probability updates
+     * @param amplification higher values favour good alphas more strongly
+     */
+    public ReactiveRCLConstructor(double[] alphas, int updateInterval, double amplification) {
+	if (alphas.length == 0)
+	    throw new IllegalArgumentException("no alphas given");
+	if (updateInterval < 1)
+	    throw new IllegalArgumentException("updateInterval = " + updateInterval);
+	this.alphas = (double[])alphas.clone();
+	this.updateInterval = updateInterval;
+	this.amplification = amplification;
+	constructors = new WeightPercentageRCLConstructor[alphas.length];
+	for (int i = 0; i < alphas.length; i++)
+	    constructors[i] = new WeightPercentageRCLConstructor(alphas[i]);
+	probabilities = new double[alphas.length];
+	Arrays.fill(probabilities, 1.0 / alphas.length);
+	uses = new int[alphas.length];
+	weightSum = new double[alphas.length];
+	bestWeight = new double[alphas.length];
+    }
+
+    /**
+     * @return a constructor with the same alphas and probabilities but without statistics,
+     * for use by another thread
+     */
+    public ReactiveRCLConstructor copy() {
+	ReactiveRCLConstructor copy = new ReactiveRCLConstructor(alphas, updateInterval, amplification);
+	copy.probabilities = (double[])probabilities.clone();
+	return copy;
+    }
+
+    /**
+     * adds the statistics gathered by a copy and updates the probabilities
+     */
+    public void merge(ReactiveRCLConstructor copy) {
+	if (copy.alphas.length != alphas.length)
+	    throw new IllegalArgumentException("different alphas");
+	for (int i = 0; i < alphas.length; i++) {
+	    if (copy.uses[i] == 0)
+		continue;
+	    if (uses[i] == 0 || copy.bestWeight[i] < bestWeight[i])
+		bestWeight[i] = copy.bestWeight[i];
+	    uses[i] += copy.uses[i];
+	    weightSum[i] += copy.weightSum[i];
+	}
+	iterations += copy.iterations;
+	updateProbabilities();
+    }
+
+    /**
+     * draws the alpha for the next iteration
+     */
+    public void startIteration(Random rand) {
+	double r = rand.nextDouble();
+	current = alphas.length - 1;
+	for (int i = 0; i < alphas.length - 1; i++) {
+	    r -= probabilities[i];
+	    if (r < 0) {
+		current = i;
+		break;
+	    }
+	}
+    }
+
+    /**
+     * records the weight of the solution found with the current alpha
+     */
+    public void solutionFound(double weight) {
+	if (current == -1)
+	    throw new RuntimeException("no iteration started");
+	if (uses[current] == 0 || weight < bestWeight[current])
+	    bestWeight[current] = weight;
+	uses[current]++;
+	weightSum[current] += weight;
+	current = -1;
+	if (++iterations % updateInterval == 0)
+	    updateProbabilities();
+    }
+
+    /**
+     * q_i = (best / average_i)^amplification, normalized; alphas not used yet get q_i = 1
+     */
+    private void updateProbabilities() {
+	double best = Double.POSITIVE_INFINITY;
+	for (int i = 0; i < alphas.length; i++)
+	    if (uses[i] > 0)
+		best = Math.min(best, bestWeight[i]);
+	double[] q = new double[alphas.length];
+	double sum = 0;
+	for (int i = 0; i < alphas.length; i++) {
+	    double average = getAverageWeight(i);
+	    if (uses[i] == 0 || average <= 0 || best <= 0)
+		q[i] = 1;
+	    else
+		q[i] = Math.pow(best / average, amplification);
+	    sum += q[i];
+	}
+	for (int i = 0; i < alphas.length; i++)
+	    probabilities[i] = q[i] / sum;
+    }
+
+    /**
+     * @return the alpha of the running iteration, the first alpha if none is running
+     */
+    private WeightPercentageRCLConstructor getConstructor() {
+	return constructors[current == -1 ? 0 : current];
+    }
+
+    public Set constructRCL(Set greedyObjects) {
+	return getConstructor().constructRCL(greedyObjects);
+    }
+
+    public int constructRCL(GreedyHeap heap, int[] rcl) {
+	return getConstructor().constructRCL(heap, rcl);
+    }
+
+    public int constructRCL(double[] weights, int size, int[] rcl) {
+	return getConstructor().constructRCL(weights, size, rcl);
+    }
+
+    public int getAlphaNr() {
+	return alphas.length;
+    }
+
+    public double getAlpha(int i) {
+	return alphas[i];
+    }
+
+    public double getProbability(int i) {
+	return probabilities[i];
+    }
+
+    /**
+     * @return number of solutions found with alpha i
+     */
+    public int getUses(int i) {
+	return uses[i];
+    }
+
+    /**
+     * @return average weight of the solutions found with alpha i, 0 if there are none
+     */
+    public double getAverageWeight(int i) {
+	return uses[i] == 0 ? 0 : weightSum[i] / uses[i];
+    }
+
+    /**
+     * @return weight of the best solution found with alpha i, 0 if there is none
+     */
+    public double getBestWeight(int i) {
+	return uses[i] == 0 ? 0 : bestWeight[i];
+    }
+
+    public String toString() {
+	StringBuffer out = new StringBuffer("ReactiveRCLConstructor:");
+	for (int i = 0; i < alphas.length; i++)
+	    out.append(" " + alphas[i] + "(p=" + probabilities[i] + ", n=" + uses[i]
+		       + ", avg=" + getAverageWeight(i) + ")");
+	return out.toString();
+    }
+
+}
@@ -0,0 +1,16 @@
+package grasp;
+
+/**
+ * GRASP-problem supporting path relinking between solutions
+ */
+public interface RelinkableGRASPProblem extends GRASPProblem, SolutionDistance {
+
+    /**
+     * explores a path of feasible solutions leading from one solution to another;
+     * must not change the solution of the problem
+     * @return the best solution strictly between both after local optimization,
+     * or null if there is none
+     */
+    public Object relink(Object from, Object to);
+
+}
@@ -0,0 +1,13 @@
+package grasp;
+
+/**
+ * measures how different two solutions are
+ */
+public interface SolutionDistance {
+
+    /**
+     * @return a distance >= 0, which is 0 if the solutions are equal
+     */
+    public double distance(Object solution1, Object solution2);
+
+}
@@ -0,0 +1,21 @@
+package grasp;
+
+/**
+ * GRASP-problem which can rewind its state instead of being cloned for every iteration
+ * all changes made after mark() are recorded, and undo(mark) restores the state at that point
+ * getSolution must return an object that is not affected by later changes or undo
+ */
+public interface UndoableGRASPProblem extends GRASPProblem {
+
+    /**
+     * starts recording changes if not done yet
+     * @return the current position of the undo log
+     */
+    public int mark();
+
+    /**
+     * rewinds all changes recorded since mark was obtained
+     */
+    public void undo(int mark);
+
+}
@@ -5,7 +5,7 @@ import java.util.*;
 /**
  * constructs the rcl for greedy selection
  */
-public class WeightPercentageRCLConstructor implements RCLConstructor {
+public class WeightPercentageRCLConstructor implements IndexedRCLConstructor {
     
     private double percentage;
 
@@ -18,21 +18,46 @@ public class WeightPercentageRCLConstructor implements RCLConstructor {
      * @return the subset of all greedyObjects with weight >= maxWeight * percentage
      */
     public Set constructRCL(Set greedyObjects) {
-	// find max weight
+	// find max weight, computing each weight only once
+	GreedyObject[] objects = (GreedyObject[])greedyObjects.toArray(new GreedyObject[0]);
+	double[] weights = new double[objects.length];
 	double maxWeight = 0;
-	Iterator it = greedyObjects.iterator();
-	while (it.hasNext())
-	    maxWeight = Math.max(maxWeight, ((GreedyObject)it.next()).getGreedyWeight());
-	// collect objects to return
-	Set result = new HashSet();
-	double threshold = maxWeight * percentage;
-	it = greedyObjects.iterator();
-	while (it.hasNext()) {
-	    GreedyObject obj = (GreedyObject)it.next();
-	    if (obj.getGreedyWeight() >= threshold)
-		result.add(obj);
+	for (int i = 0; i < objects.length; i++) {
+	    weights[i] = objects[i].getGreedyWeight();
+	    maxWeight = Math.max(maxWeight, weights[i]);
 	}
+	// collect objects to return; keep their order so selections are reproducible
+	Set result = new LinkedHashSet();
+	double threshold = maxWeight * percentage;
+	for (int i = 0; i < objects.length; i++)
+	    if (weights[i] >= threshold)
+		result.add(objects[i]);
 	return result;
     }
 
+    /**
+     * @return the number of objects with weight >= maxWeight * percentage, written to rcl
+     */
+    public int constructRCL(GreedyHeap heap, int[] rcl) {
+	if (heap.isEmpty())
+	    return 0;
+	double threshold = Math.max(0, heap.maxWeight()) * percentage;
+	return heap.collect(threshold, rcl);
+    }
+
+    /**
+     * @return the number of objects with weight >= maxWeight * percentage, written to rcl
+     */
+    public int constructRCL(double[] weights, int size, int[] rcl) {
+	double maxWeight = 0;
+	for (int i = 0; i < size; i++)
+	    maxWeight = Math.max(maxWeight, weights[i]);
+	double threshold = maxWeight * percentage;
+	int rclSize = 0;
+	for (int i = 0; i < size; i++)
+	    if (weights[i] >= threshold)
+		rcl[rclSize++] = i;
+	return rclSize;
+    }
+
 }
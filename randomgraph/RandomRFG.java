@@ -12,6 +12,16 @@ import org._3pq.jgrapht.edge.*;
  */
 public class RandomRFG {
 
+    private Random rand;
+
+    public RandomRFG() {
+	rand = new Random();
+    }
+
+    public RandomRFG(long seed) {
+	rand = new Random(seed);
+    }
+
     /**
      * handles the pre-dominator tree needed for generating backward arcs
      */
@@ -84,7 +94,6 @@ public class RandomRFG {
      */
     public DirectedGraph createRandomRFG(int vertexNr, int fcArcNr, int bArcNr, boolean singleLeaf) {
 	// init
-	Random rand = new Random();
 	Object[] vertices = new Object[vertexNr];
 	DirectedGraph g = new DirectedMultigraph();
 	PreDominatorTree preDom = new PreDominatorTree(vertexNr);